@@ -0,0 +1,85 @@
+package org.swingk.io.dirtree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares listing of a directory with mostly regular files via {@link DirLister} with the plain filtered
+ * {@link DirectoryStream} (which reads attributes of each entry by its full path).
+ * <p>
+ * The difference in the number of system calls can be observed by running the benchmark under
+ * {@code strace -f -c -e trace=%stat}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ListingBenchmark {
+
+    @Param({"50000"})
+    public int files;
+
+    @Param({"100"})
+    public int dirs;
+
+    @Param({"0.1"})
+    public double hiddenRatio;
+
+    private Path dir;
+    private DirFilter filter;
+    private DirLister lister;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("dir-tree-listing");
+        int hiddenEvery = hiddenRatio > 0 ? (int) Math.round(1 / hiddenRatio) : Integer.MAX_VALUE;
+        for (int i = 0; i < files; i++) {
+            Files.createFile(dir.resolve((i % hiddenEvery == 0 ? ".file" : "file") + i + ".log"));
+        }
+        for (int i = 0; i < dirs; i++) {
+            Files.createDirectory(dir.resolve("dir" + i));
+        }
+        filter = new DirFilter(false, false);
+        lister = new DirLister(filter);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        TreeGenerator.delete(dir);
+    }
+
+    @Benchmark
+    public List<Path> filteredDirectoryStream() throws IOException {
+        List<Path> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, filter)) {
+            stream.forEach(children::add);
+        }
+        return children;
+    }
+
+    @Benchmark
+    public List<Path> dirLister() throws IOException {
+        return lister.list(dir);
+    }
+}
@@ -0,0 +1,126 @@
+package org.swingk.io.dirtree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.tree.TreePath;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of {@link DirTreeModel} on synthetic trees (see {@link TreeGenerator.Shape}): population of the target
+ * directory (with its ancestors), leaf status of its subdirectories and resolution of the tree path. Allocation rate
+ * can be measured with {@code -prof gc}, e.g. {@code -Djmh.args="ModelBenchmark -prof gc"}. See
+ * {@link NodeFootprint} for the retained memory per node.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ModelBenchmark {
+
+    @Param({"WIDE", "DEEP", "MIXED", "HIDDEN"})
+    public TreeGenerator.Shape shape;
+
+    @Param({"default", "compact"})
+    public String nodes;
+
+    /**
+     * See {@link DirTreeModel#setPageSize(int)}.
+     */
+    @Param({"0", "1000"})
+    public int pageSize;
+
+    private Path root;
+    private Path target;
+    private DirTreeModel<?> model;
+    private List<Path> subdirs;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("dir-tree-model");
+        target = TreeGenerator.generate(root, shape);
+        model = newModel();
+        populate(model);
+        subdirs = new ArrayList<>(new DirLister(new DirFilter(false, false)).list(target));
+        if (subdirs.isEmpty()) {
+            subdirs.add(target); // DEEP
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        TreeGenerator.delete(root);
+    }
+
+    private DirTreeModel<?> newModel() {
+        DirTreeModel<?> m = "compact".equals(nodes) ? new DirTreeModel<>(new CompactNodeFactory()) :
+                new DirTreeModel<>(new DefaultNodeFactory());
+        m.setPageSize(pageSize);
+        return m;
+    }
+
+    private int populate(DirTreeModel<?> m) {
+        Object node = m.getTreePath(target).orElseThrow().getLastPathComponent();
+        return m.getChildCount(node);
+    }
+
+    /**
+     * Populates new model with the target directory and its ancestors.
+     */
+    @Benchmark
+    public int populate() {
+        return populate(newModel());
+    }
+
+    /**
+     * Leaf status of the target subdirectories, as determined for a new model.
+     */
+    @Benchmark
+    public int leafProbe() throws IOException {
+        int leafs = 0;
+        DirFilter filter = new DirFilter(false, false);
+        LeafProbe probe = model.getLeafProbe();
+        for (Path dir : subdirs) {
+            if (probe.isLeaf(dir, filter)) {
+                leafs++;
+            }
+        }
+        return leafs;
+    }
+
+    /**
+     * Tree path of the last subdirectory in the populated model.
+     */
+    @Benchmark
+    public TreePath getTreePath() {
+        return model.getTreePath(subdirs.get(subdirs.size() - 1)).orElseThrow();
+    }
+
+    /**
+     * Sort of the target subdirectories with {@link DirTreeUtils#NAME_COMPARATOR}.
+     */
+    @Benchmark
+    public List<Path> sortByNameComparator() {
+        List<Path> paths = new ArrayList<>(subdirs);
+        paths.sort(DirTreeUtils.NAME_COMPARATOR);
+        return paths;
+    }
+}
@@ -0,0 +1,91 @@
+package org.swingk.io.dirtree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries of {@link DirNameIndex} with millions of synthetic directories (10 subdirectories per directory, about
+ * 20% of the names are distinct). The retained heap of the index can be checked with {@code -prof gc} or a heap
+ * dump.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class NameIndexBenchmark {
+    private static final String[] WORDS = {"src", "main", "test", "build", "docs", "lib", "assets", "config",
+            "images", "cache", "data", "backup", "tmp", "logs", "release"};
+
+    @Param({"1000000", "5000000"})
+    public int directories;
+
+    private Path root;
+    private DirNameIndex index;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, ExecutionException, InterruptedException {
+        root = Files.createTempDirectory("dir-name-index");
+        index = new DirNameIndex(new DirTreeModel<>(new DefaultNodeFactory()));
+        index.addRoot(root).get();
+        Random random = new Random(42);
+        int distinctNames = directories / 5;
+        for (int id = 1, parent = 0; id < directories; id++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            index.addDirectory(parent, word + "-" + random.nextInt(distinctNames));
+            if (id % 10 == 0) {
+                parent++;
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        index.close();
+        Files.delete(root);
+    }
+
+    /**
+     * Frequent name fragment, the results are limited.
+     */
+    @Benchmark
+    public List<Path> findFrequent() {
+        return index.find("main", 100);
+    }
+
+    /**
+     * Rare name fragment, the whole index is scanned.
+     */
+    @Benchmark
+    public List<Path> findRare() {
+        return index.find("config-12345", 100);
+    }
+
+    /**
+     * Missing name fragment.
+     */
+    @Benchmark
+    public List<Path> findMissing() {
+        return index.find("xyz", 100);
+    }
+}
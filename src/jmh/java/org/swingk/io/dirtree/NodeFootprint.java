@@ -0,0 +1,69 @@
+package org.swingk.io.dirtree;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+
+/**
+ * Reports retained memory per node for a tree of synthetic directories (no filesystem access), built with
+ * {@link DefaultNodeFactory} and {@link CompactNodeFactory}.
+ * <p>
+ * Usage: {@code NodeFootprint [directories] [fan-out]}, default - 1,000,000 directories, 100 subdirectories per
+ * directory.
+ */
+public class NodeFootprint {
+
+    public static void main(String[] args) {
+        int directories = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int fanOut = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        report("DefaultDirNode", new DefaultNodeFactory(), directories, fanOut);
+        report("CompactDirNode", new CompactNodeFactory(), directories, fanOut);
+    }
+
+    private static <T extends DirNode<T>> void report(String name, DirNodeFactory<T> factory, int directories,
+                                                      int fanOut) {
+        FileSystem fs = FileSystems.getDefault();
+        T root = factory.createRootNode();
+        T fsNode = factory.createFileSystemNode(fs);
+        root.add(fsNode);
+        Path fsRoot = fs.getRootDirectories().iterator().next();
+        T fsRootNode = factory.createDirectoryNode(fsRoot, true);
+        fsNode.add(fsRootNode);
+        int count = build(factory, fsRootNode, fsRoot, directories - 1, fanOut) + 1;
+
+        // the filesystem (shared by all paths) is not a part of the nodes footprint
+        long fsSize = GraphLayout.parseInstance(fs, fsRoot).totalSize();
+        long size = GraphLayout.parseInstance(root).totalSize() - fsSize;
+        System.out.printf("%s: %,d directories, %,d bytes, %.1f bytes/node%n", name, count, size,
+                (double) size / count);
+    }
+
+    /**
+     * Adds directories breadth-first, {@code fanOut} subdirectories per directory.
+     *
+     * @return Number of added directories.
+     */
+    private static <T extends DirNode<T>> int build(DirNodeFactory<T> factory, T parentNode, Path parentDir,
+                                                    int directories, int fanOut) {
+        ArrayDeque<T> nodes = new ArrayDeque<>();
+        ArrayDeque<Path> dirs = new ArrayDeque<>();
+        nodes.add(parentNode);
+        dirs.add(parentDir);
+        int count = 0;
+        while (count < directories) {
+            T node = nodes.poll();
+            Path dir = dirs.poll();
+            for (int i = 0; i < fanOut && count < directories; i++, count++) {
+                Path childDir = dir.resolve("directory-" + i);
+                T child = factory.createDirectoryNode(childDir, false);
+                node.add(child);
+                nodes.add(child);
+                dirs.add(childDir);
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,88 @@
+package org.swingk.io.dirtree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.tree.TreePath;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Child lookup in a wide directory: {@link DirTreeModel#getTreePath(Path)} and
+ * {@link DirTreeModel#getIndexOfChild(Object, Object)} (binary search) vs. linear scan of the children.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PathLookupBenchmark {
+
+    @Param({"50000"})
+    public int width;
+
+    @Param({"default", "compact"})
+    public String nodes;
+
+    private Path dir;
+    private DirTreeModel<?> model;
+    private Path lastChildDir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("dir-tree-lookup");
+        for (int i = 0; i < width; i++) {
+            Files.createDirectory(dir.resolve(String.format("dir%06d", i)));
+        }
+        lastChildDir = dir.resolve(String.format("dir%06d", width - 1));
+        model = "compact".equals(nodes) ? new DirTreeModel<>(new CompactNodeFactory()) :
+                new DirTreeModel<>(new DefaultNodeFactory());
+        model.getTreePath(lastChildDir).orElseThrow(); // populate
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        TreeGenerator.delete(dir);
+    }
+
+    @Benchmark
+    public Optional<TreePath> getTreePath() {
+        return model.getTreePath(lastChildDir);
+    }
+
+    @Benchmark
+    public int getIndexOfChild() {
+        TreePath path = model.getTreePath(lastChildDir).orElseThrow();
+        return model.getIndexOfChild(path.getParentPath().getLastPathComponent(), path.getLastPathComponent());
+    }
+
+    /**
+     * Baseline - the lookup of the last child by scanning all children of its parent.
+     */
+    @Benchmark
+    public int linearScan() {
+        TreePath path = model.getTreePath(lastChildDir).orElseThrow();
+        DirNode<?> parent = (DirNode<?>) path.getParentPath().getLastPathComponent();
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            if (lastChildDir.equals(parent.getChildAt(i).getDirectory())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,73 @@
+package org.swingk.io.dirtree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting of a wide directory listing: {@link DirTreeUtils#NAME_COMPARATOR} vs. orderings with precomputed sort keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SortBenchmark {
+
+    @Param({"100000"})
+    public int width;
+
+    @Param({"NAME_COMPARATOR", "NAME_ORDER", "NATURAL_NAME_ORDER", "collation"})
+    public String order;
+
+    private List<Path> paths;
+    private Comparator<Path> comparator;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        paths = new ArrayList<>(width);
+        Path dir = Path.of("dir");
+        for (int i = 0; i < width; i++) {
+            paths.add(dir.resolve("Dir-" + Integer.toHexString(random.nextInt()) + "-" + i));
+        }
+        switch (order) {
+            case "NAME_COMPARATOR":
+                comparator = DirTreeUtils.NAME_COMPARATOR;
+                break;
+            case "NAME_ORDER":
+                comparator = DirTreeUtils.NAME_ORDER;
+                break;
+            case "NATURAL_NAME_ORDER":
+                comparator = DirTreeUtils.NATURAL_NAME_ORDER;
+                break;
+            default:
+                comparator = DirTreeUtils.collationOrder(Locale.ENGLISH);
+        }
+    }
+
+    @Benchmark
+    public List<Path> sort() {
+        List<Path> copy = new ArrayList<>(paths);
+        DirTreeUtils.sort(copy, comparator);
+        return copy;
+    }
+}
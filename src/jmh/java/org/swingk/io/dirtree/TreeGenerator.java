@@ -0,0 +1,97 @@
+package org.swingk.io.dirtree;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates synthetic directory trees on local disk for the benchmarks. The trees are deterministic, so that the
+ * results are reproducible.
+ */
+final class TreeGenerator {
+    /**
+     * Shape of the generated tree.
+     */
+    enum Shape {
+        /**
+         * 100,000 subdirectories of the target directory.
+         */
+        WIDE,
+        /**
+         * Chain of 500 nested directories, the target is the deepest one.
+         */
+        DEEP,
+        /**
+         * 10,000 entries in the target directory - 10% directories (each with 5 subdirectories and a file) and 90%
+         * regular files.
+         */
+        MIXED,
+        /**
+         * 10,000 subdirectories of the target directory, half of them hidden.
+         */
+        HIDDEN
+    }
+
+    private TreeGenerator() {
+    }
+
+    /**
+     * @param root Existing empty directory.
+     * @return Target directory of the generated tree.
+     */
+    static Path generate(Path root, Shape shape) throws IOException {
+        Random random = new Random(42);
+        switch (shape) {
+            case WIDE:
+                for (int i = 0; i < 100_000; i++) {
+                    Files.createDirectory(root.resolve(randomName(random, i)));
+                }
+                return root;
+            case DEEP:
+                Path dir = root;
+                for (int i = 0; i < 500; i++) {
+                    dir = Files.createDirectory(dir.resolve("d" + i));
+                }
+                return dir;
+            case MIXED:
+                for (int i = 0; i < 10_000; i++) {
+                    Path entry = root.resolve(randomName(random, i));
+                    if (i % 10 == 0) {
+                        Files.createDirectory(entry);
+                        for (int j = 0; j < 5; j++) {
+                            Files.createDirectory(entry.resolve("sub" + j));
+                        }
+                        Files.createFile(entry.resolve("file.txt"));
+                    } else {
+                        Files.createFile(entry);
+                    }
+                }
+                return root;
+            case HIDDEN:
+                for (int i = 0; i < 10_000; i++) {
+                    Files.createDirectory(root.resolve((i % 2 == 0 ? "." : "") + randomName(random, i)));
+                }
+                return root;
+            default:
+                throw new IllegalArgumentException(shape.toString());
+        }
+    }
+
+    private static String randomName(Random random, int i) {
+        return "entry-" + Integer.toHexString(random.nextInt()) + "-" + i;
+    }
+
+    /**
+     * Deletes the directory with all its content.
+     */
+    static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+}
@@ -1,4 +1,5 @@
 module org.swingk.io.dirtree {
     exports org.swingk.io.dirtree;
-    requires java.desktop;
+    requires static java.desktop;
+    requires static jdk.jfr;
 }
@@ -0,0 +1,61 @@
+package org.swingk.io.dirtree;
+
+import javax.swing.SwingUtilities;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Receives the listed subdirectories and periodically publishes the sorted batches of the new ones to the EDT. A batch
+ * is published at most once per interval and only when the previous batch has been processed, so that the EDT is not
+ * flooded with tasks by a fast listing.
+ *
+ * @see DirTreeModel#setBatchInterval(int)
+ */
+final class BatchPublisher implements Predicate<Path> {
+    private final long intervalNanos;
+    private final Comparator<? super Path> comparator;
+    private final Consumer<List<Path>> consumer;
+    private final AtomicBoolean inFlight = new AtomicBoolean();
+    private List<Path> pending = new ArrayList<>();
+    private long lastPublished = System.nanoTime();
+
+    /**
+     * @param consumer Receives the batches on the EDT.
+     */
+    BatchPublisher(int intervalMillis, Comparator<? super Path> comparator, Consumer<List<Path>> consumer) {
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.comparator = comparator;
+        this.consumer = consumer;
+    }
+
+    @Override
+    public boolean test(Path path) {
+        pending.add(path);
+        long now = System.nanoTime();
+        if (now - lastPublished >= intervalNanos && !inFlight.get()) {
+            publish(now);
+        }
+        return true;
+    }
+
+    private void publish(long now) {
+        List<Path> batch = pending;
+        pending = new ArrayList<>();
+        lastPublished = now;
+        DirTreeUtils.sort(batch, comparator);
+        inFlight.set(true);
+        SwingUtilities.invokeLater(() -> {
+            try {
+                consumer.accept(batch);
+            } finally {
+                inFlight.set(false);
+            }
+        });
+    }
+}
@@ -0,0 +1,252 @@
+package org.swingk.io.dirtree;
+
+import javax.swing.tree.TreeNode;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Memory efficient implementation of {@link DirNode}:
+ * <ul>
+ * <li>children are kept in a plain array;</li>
+ * <li>a directory node stores only its (interned) name - the directory {@link Path} is reconstructed on demand from
+ * the names of the node ancestors. A removed node stores its full path instead, so the directories of the removed
+ * node and its descendants are still available;</li>
+ * <li>a node knows its index in the parent, so {@link #getIndex(TreeNode)} is O(1).</li>
+ * </ul>
+ *
+ * @see CompactNodeFactory
+ */
+public class CompactDirNode implements DirNode<CompactDirNode> {
+
+    private static final CompactDirNode[] NO_CHILDREN = new CompactDirNode[0];
+
+    /**
+     * Name of directory ({@link String}), filesystem root or removed directory ({@link Path}), filesystem
+     * ({@link FileSystem}), placeholder kind ({@link PlaceholderKind}) or {@code null} for root node.
+     */
+    private Object data;
+    private CompactDirNode parent;
+    private int index;
+    private CompactDirNode[] children = NO_CHILDREN;
+    private int childCount;
+
+    CompactDirNode(Object data) {
+        this.data = data;
+    }
+
+    /**
+     * @return {@code null} for root or directory nodes.
+     */
+    public FileSystem getFileSystem() {
+        return data instanceof FileSystem ? (FileSystem) data : null;
+    }
+
+    @Override
+    public Path getDirectory() {
+        if (data instanceof Path) {
+            return (Path) data;
+        }
+        if (!(data instanceof String)) {
+            return null;
+        }
+        int depth = 0;
+        CompactDirNode node = this;
+        while (node.data instanceof String) {
+            depth++;
+            node = node.parent;
+        }
+        Path fsRoot = (Path) node.data;
+        String[] names = new String[depth];
+        node = this;
+        for (int i = depth - 1; i >= 0; i--) {
+            names[i] = (String) node.data;
+            node = node.parent;
+        }
+        return fsRoot.getFileSystem().getPath(fsRoot.toString(), names);
+    }
+
+    @Override
+    public PlaceholderKind getPlaceholderKind() {
+        return data instanceof PlaceholderKind ? (PlaceholderKind) data : null;
+    }
+
+    @Override
+    public CompactDirNode getChildAt(int index) {
+        Objects.checkIndex(index, childCount);
+        return children[index];
+    }
+
+    @Override
+    public int getChildCount() {
+        return childCount;
+    }
+
+    @Override
+    public CompactDirNode getParent() {
+        return parent;
+    }
+
+    @Override
+    public int getIndex(TreeNode node) {
+        if (node instanceof CompactDirNode && ((CompactDirNode) node).parent == this) {
+            return ((CompactDirNode) node).index;
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean isIndexed() {
+        return true;
+    }
+
+    @Override
+    public boolean getAllowsChildren() {
+        return !(data instanceof PlaceholderKind);
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return childCount == 0;
+    }
+
+    @Override
+    public Enumeration<CompactDirNode> children() {
+        if (childCount == 0) {
+            return Collections.emptyEnumeration();
+        }
+        return new Enumeration<>() {
+            private int i;
+
+            @Override
+            public boolean hasMoreElements() {
+                return i < childCount;
+            }
+
+            @Override
+            public CompactDirNode nextElement() {
+                if (i >= childCount) {
+                    throw new NoSuchElementException();
+                }
+                return children[i++];
+            }
+        };
+    }
+
+    @Override
+    public void add(CompactDirNode child) {
+        insert(child, childCount);
+    }
+
+    @Override
+    public void addAll(Collection<? extends CompactDirNode> newChildren) {
+        if (childCount + newChildren.size() > children.length) {
+            children = Arrays.copyOf(children, childCount + newChildren.size());
+        }
+        for (CompactDirNode child : newChildren) {
+            attach(child, childCount);
+            children[childCount++] = child;
+        }
+    }
+
+    @Override
+    public void insert(CompactDirNode child, int index) {
+        Objects.checkIndex(index, childCount + 1);
+        if (childCount == children.length) {
+            children = Arrays.copyOf(children, Math.max(4, childCount + (childCount >> 1)));
+        }
+        System.arraycopy(children, index, children, index + 1, childCount - index);
+        attach(child, index);
+        children[index] = child;
+        childCount++;
+        reindex(index + 1);
+    }
+
+    @Override
+    public void remove(int index) {
+        Objects.checkIndex(index, childCount);
+        CompactDirNode child = children[index];
+        System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+        children[--childCount] = null;
+        child.detach();
+        reindex(index);
+    }
+
+    @Override
+    public void removeAllChildren() {
+        for (int i = 0; i < childCount; i++) {
+            children[i].detach();
+        }
+        children = NO_CHILDREN;
+        childCount = 0;
+    }
+
+    /**
+     * Keeps the children which remain attached, so they don't need to store their full paths.
+     */
+    @Override
+    public void replaceChildren(List<? extends CompactDirNode> newChildren) {
+        CompactDirNode[] current = Arrays.copyOf(children, childCount);
+        CompactDirNode[] updated = newChildren.toArray(NO_CHILDREN);
+        for (CompactDirNode child : updated) {
+            if (child.parent == this) {
+                child.parent = null; // marks as kept, re-attached below
+            }
+        }
+        for (CompactDirNode child : current) {
+            if (child.parent == this) {
+                child.detach();
+            }
+        }
+        for (int i = 0; i < updated.length; i++) {
+            attach(updated[i], i);
+        }
+        children = updated;
+        childCount = updated.length;
+    }
+
+    /**
+     * Removes the node from its parent, keeping its full path.
+     */
+    private void detach() {
+        if (data instanceof String) {
+            data = getDirectory();
+        }
+        parent = null;
+    }
+
+    private void attach(CompactDirNode child, int index) {
+        if (child.parent != null) {
+            throw new IllegalArgumentException("Node already has parent");
+        }
+        child.parent = this;
+        child.index = index;
+    }
+
+    private void reindex(int from) {
+        for (int i = from; i < childCount; i++) {
+            children[i].index = i;
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (data == null) {
+            return "root";
+        } else if (data instanceof FileSystem) {
+            return data == FileSystems.getDefault() ? "Computer" : data.toString();
+        } else if (data instanceof PlaceholderKind) {
+            return ((PlaceholderKind) data).getText();
+        } else if (data instanceof Path) {
+            return DirTreeUtils.getName((Path) data);
+        }
+        return (String) data;
+    }
+}
@@ -0,0 +1,29 @@
+package org.swingk.io.dirtree;
+
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+
+/**
+ * Factory of {@link CompactDirNode} - memory efficient alternative to {@link DefaultNodeFactory}.
+ */
+public class CompactNodeFactory implements DirNodeFactory<CompactDirNode> {
+    @Override
+    public CompactDirNode createRootNode() {
+        return new CompactDirNode(null);
+    }
+
+    @Override
+    public CompactDirNode createFileSystemNode(FileSystem fs) {
+        return new CompactDirNode(fs);
+    }
+
+    @Override
+    public CompactDirNode createDirectoryNode(Path directory, boolean filesystemRoot) {
+        return new CompactDirNode(filesystemRoot ? directory : DirTreeUtils.getName(directory).intern());
+    }
+
+    @Override
+    public CompactDirNode createPlaceholderNode(PlaceholderKind kind) {
+        return new CompactDirNode(kind);
+    }
+}
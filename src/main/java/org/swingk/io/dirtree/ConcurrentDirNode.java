@@ -0,0 +1,252 @@
+package org.swingk.io.dirtree;
+
+import javax.swing.tree.TreeNode;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Implementation of {@link DirNode} which can be read by any number of threads without locking while it is being
+ * populated or refreshed, e.g. to resolve paths via {@link DirTreeModel#getTreePath(Path)} on background threads while
+ * the tree is displayed:
+ * <ul>
+ * <li>children are kept in an immutable array, which is replaced (copy-on-write) by each modification, so a reader
+ * always sees a consistent snapshot (see {@link #getChildren()});</li>
+ * <li>the modifications of a node are serialized, so the model can populate different nodes concurrently;</li>
+ * <li>reordering or merging of the children replaces the array at once (see {@link #replaceChildren(List)}), so the
+ * readers never see the children partially removed.</li>
+ * </ul>
+ * Modifications copy the children array, so the node is less efficient than {@link CompactDirNode} for directories
+ * which are modified often (e.g. streamed in batches, see {@link DirTreeModel#setBatchInterval(int)}).
+ *
+ * @see ConcurrentNodeFactory
+ */
+public class ConcurrentDirNode implements DirNode<ConcurrentDirNode> {
+
+    private static final ConcurrentDirNode[] NO_CHILDREN = new ConcurrentDirNode[0];
+
+    /**
+     * Directory ({@link Path}), filesystem ({@link FileSystem}), placeholder kind ({@link PlaceholderKind}) or
+     * {@code null} for root node.
+     */
+    private final Object data;
+    private volatile ConcurrentDirNode parent;
+    private volatile int index; // hint, verified against the children snapshot of the parent
+    private volatile ConcurrentDirNode[] children = NO_CHILDREN;
+
+    ConcurrentDirNode(Object data) {
+        this.data = data;
+    }
+
+    /**
+     * @return {@code null} for root or directory nodes.
+     */
+    public FileSystem getFileSystem() {
+        return data instanceof FileSystem ? (FileSystem) data : null;
+    }
+
+    @Override
+    public Path getDirectory() {
+        return data instanceof Path ? (Path) data : null;
+    }
+
+    @Override
+    public PlaceholderKind getPlaceholderKind() {
+        return data instanceof PlaceholderKind ? (PlaceholderKind) data : null;
+    }
+
+    /**
+     * @return Immutable snapshot of the children.
+     */
+    @Override
+    public List<ConcurrentDirNode> getChildren() {
+        ConcurrentDirNode[] snapshot = children;
+        return snapshot.length == 0 ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(snapshot));
+    }
+
+    @Override
+    public ConcurrentDirNode getChildAt(int index) {
+        ConcurrentDirNode[] snapshot = children;
+        Objects.checkIndex(index, snapshot.length);
+        return snapshot[index];
+    }
+
+    @Override
+    public int getChildCount() {
+        return children.length;
+    }
+
+    @Override
+    public ConcurrentDirNode getParent() {
+        return parent;
+    }
+
+    @Override
+    public int getIndex(TreeNode node) {
+        if (!(node instanceof ConcurrentDirNode) || ((ConcurrentDirNode) node).parent != this) {
+            return -1;
+        }
+        ConcurrentDirNode child = (ConcurrentDirNode) node;
+        ConcurrentDirNode[] snapshot = children;
+        int i = child.index;
+        if (i < snapshot.length && snapshot[i] == child) {
+            return i;
+        }
+        for (i = 0; i < snapshot.length; i++) { // modified after the index was read
+            if (snapshot[i] == child) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean isIndexed() {
+        return true;
+    }
+
+    @Override
+    public boolean getAllowsChildren() {
+        return !(data instanceof PlaceholderKind);
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return children.length == 0;
+    }
+
+    @Override
+    public Enumeration<ConcurrentDirNode> children() {
+        ConcurrentDirNode[] snapshot = children;
+        if (snapshot.length == 0) {
+            return Collections.emptyEnumeration();
+        }
+        return new Enumeration<>() {
+            private int i;
+
+            @Override
+            public boolean hasMoreElements() {
+                return i < snapshot.length;
+            }
+
+            @Override
+            public ConcurrentDirNode nextElement() {
+                if (i >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot[i++];
+            }
+        };
+    }
+
+    @Override
+    public void add(ConcurrentDirNode child) {
+        addAll(List.of(child));
+    }
+
+    @Override
+    public synchronized void addAll(Collection<? extends ConcurrentDirNode> newChildren) {
+        ConcurrentDirNode[] current = children;
+        ConcurrentDirNode[] updated = Arrays.copyOf(current, current.length + newChildren.size());
+        int i = current.length;
+        for (ConcurrentDirNode child : newChildren) {
+            attach(child, i);
+            updated[i++] = child;
+        }
+        children = updated;
+    }
+
+    @Override
+    public synchronized void insert(ConcurrentDirNode child, int index) {
+        ConcurrentDirNode[] current = children;
+        Objects.checkIndex(index, current.length + 1);
+        ConcurrentDirNode[] updated = new ConcurrentDirNode[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, index);
+        System.arraycopy(current, index, updated, index + 1, current.length - index);
+        attach(child, index);
+        updated[index] = child;
+        children = updated;
+        reindex(updated, index + 1);
+    }
+
+    @Override
+    public synchronized void remove(int index) {
+        ConcurrentDirNode[] current = children;
+        Objects.checkIndex(index, current.length);
+        ConcurrentDirNode[] updated = new ConcurrentDirNode[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, index);
+        System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+        children = updated;
+        current[index].parent = null;
+        reindex(updated, index);
+    }
+
+    @Override
+    public synchronized void removeAllChildren() {
+        ConcurrentDirNode[] current = children;
+        children = NO_CHILDREN;
+        for (ConcurrentDirNode child : current) {
+            child.parent = null;
+        }
+    }
+
+    /**
+     * Replaces the children array at once, so the readers see either the old or the new children.
+     */
+    @Override
+    public synchronized void replaceChildren(List<? extends ConcurrentDirNode> newChildren) {
+        ConcurrentDirNode[] current = children;
+        ConcurrentDirNode[] updated = newChildren.toArray(NO_CHILDREN);
+        Set<ConcurrentDirNode> kept = Collections.newSetFromMap(new IdentityHashMap<>(updated.length));
+        for (int i = 0; i < updated.length; i++) {
+            ConcurrentDirNode child = updated[i];
+            if (child.parent == this) {
+                child.index = i;
+            } else {
+                attach(child, i);
+            }
+            kept.add(child);
+        }
+        children = updated;
+        for (ConcurrentDirNode child : current) {
+            if (!kept.contains(child)) {
+                child.parent = null;
+            }
+        }
+    }
+
+    private void attach(ConcurrentDirNode child, int index) {
+        if (child.parent != null) {
+            throw new IllegalArgumentException("Node already has parent");
+        }
+        child.index = index;
+        child.parent = this;
+    }
+
+    private static void reindex(ConcurrentDirNode[] nodes, int from) {
+        for (int i = from; i < nodes.length; i++) {
+            nodes[i].index = i;
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (data == null) {
+            return "root";
+        } else if (data instanceof FileSystem) {
+            return data == FileSystems.getDefault() ? "Computer" : data.toString();
+        } else if (data instanceof PlaceholderKind) {
+            return ((PlaceholderKind) data).getText();
+        }
+        return DirTreeUtils.getName((Path) data);
+    }
+}
@@ -0,0 +1,29 @@
+package org.swingk.io.dirtree;
+
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+
+/**
+ * Factory of {@link ConcurrentDirNode} - nodes which can be read by any thread without locking.
+ */
+public class ConcurrentNodeFactory implements DirNodeFactory<ConcurrentDirNode> {
+    @Override
+    public ConcurrentDirNode createRootNode() {
+        return new ConcurrentDirNode(null);
+    }
+
+    @Override
+    public ConcurrentDirNode createFileSystemNode(FileSystem fs) {
+        return new ConcurrentDirNode(fs);
+    }
+
+    @Override
+    public ConcurrentDirNode createDirectoryNode(Path directory, boolean filesystemRoot) {
+        return new ConcurrentDirNode(directory);
+    }
+
+    @Override
+    public ConcurrentDirNode createPlaceholderNode(PlaceholderKind kind) {
+        return new ConcurrentDirNode(kind);
+    }
+}
@@ -2,6 +2,7 @@ package org.swingk.io.dirtree;
 
 import javax.swing.tree.DefaultMutableTreeNode;
 import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.util.Objects;
 
@@ -12,12 +13,14 @@ public class DefaultDirNode extends DefaultMutableTreeNode implements DirNode<De
 
     private final FileSystem fileSystem;
     private final Path directory;
+    private final PlaceholderKind placeholderKind;
     private final String str;
 
     public DefaultDirNode() {
         super();
         this.fileSystem = null;
         this.directory = null;
+        this.placeholderKind = null;
         this.str = "root";
     }
 
@@ -25,16 +28,26 @@ public class DefaultDirNode extends DefaultMutableTreeNode implements DirNode<De
         super();
         this.fileSystem = Objects.requireNonNull(fileSystem);
         this.directory = null;
-        this.str = "Computer";
+        this.placeholderKind = null;
+        this.str = fileSystem == FileSystems.getDefault() ? "Computer" : fileSystem.toString();
     }
 
     public DefaultDirNode(Path directory) {
         super();
         this.fileSystem = null;
         this.directory = Objects.requireNonNull(directory);
+        this.placeholderKind = null;
         this.str = DirTreeUtils.getName(getDirectory());
     }
 
+    public DefaultDirNode(PlaceholderKind placeholderKind) {
+        super(null, false);
+        this.fileSystem = null;
+        this.directory = null;
+        this.placeholderKind = Objects.requireNonNull(placeholderKind);
+        this.str = placeholderKind.getText();
+    }
+
     /**
      * @return {@code null} for root or directory nodes.
      */
@@ -43,14 +56,19 @@ public class DefaultDirNode extends DefaultMutableTreeNode implements DirNode<De
     }
 
     /**
-     * @return {@link Path} instance that represents the node's directory or {@code null} for root or file system
-     * nodes.
+     * @return {@link Path} instance that represents the node's directory or {@code null} for root, file system or
+     * placeholder nodes.
      */
     @Override
     public Path getDirectory() {
         return directory;
     }
 
+    @Override
+    public PlaceholderKind getPlaceholderKind() {
+        return placeholderKind;
+    }
+
     @Override
     public String toString() {
         return str;
@@ -65,4 +83,9 @@ public class DefaultDirNode extends DefaultMutableTreeNode implements DirNode<De
     public void add(DefaultDirNode child) {
         super.add(child);
     }
+
+    @Override
+    public void insert(DefaultDirNode child, int index) {
+        super.insert(child, index);
+    }
 }
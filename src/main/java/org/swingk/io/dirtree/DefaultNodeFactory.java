@@ -21,4 +21,9 @@ public class DefaultNodeFactory implements DirNodeFactory<DefaultDirNode> {
     public DefaultDirNode createDirectoryNode(Path directory, boolean filesystemRoot) {
         return new DefaultDirNode(directory);
     }
+
+    @Override
+    public DefaultDirNode createPlaceholderNode(PlaceholderKind kind) {
+        return new DefaultDirNode(kind);
+    }
 }
@@ -0,0 +1,296 @@
+package org.swingk.io.dirtree;
+
+import javax.swing.JTree;
+import javax.swing.SwingUtilities;
+import javax.swing.tree.TreePath;
+import java.awt.Rectangle;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Cache of the attributes of the directories of the model (see {@link DirAttributes}), e.g. for the columns of a
+ * tree-table, so that rendering never accesses the filesystem:
+ * <ul>
+ * <li>the attributes which the model reads while listing the directories (e.g. POSIX attributes required by the
+ * filter) are kept, see {@link DirTreeModel#setAttributeCache(DirAttributeCache)};</li>
+ * <li>missing or expired attributes of the visible rows are read in background in a single batch (see
+ * {@link #loadVisibleRows(JTree)}) and the model fires {@code treeNodesChanged} events for the updated nodes;</li>
+ * <li>the attributes expire after the time to live, but remain available until they are read again.</li>
+ * </ul>
+ * Thread safe.
+ *
+ * @param <T> Type of the model nodes.
+ */
+public final class DirAttributeCache<T extends DirNode<T>> implements Closeable {
+    /**
+     * Default time to live of the cached attributes.
+     *
+     * @see #setTimeToLive(long)
+     */
+    public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 30_000;
+
+    private static final int MIN_PURGE_SIZE = 10_000;
+
+    private final DirTreeModel<T> model;
+    private final Executor executor;
+    private final boolean ownExecutor;
+    private final Map<Path, Entry> cache = new ConcurrentHashMap<>();
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+    private volatile long timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIME_TO_LIVE_MILLIS);
+    private volatile boolean countItems;
+    private volatile int purgeSize = MIN_PURGE_SIZE;
+    private volatile boolean closed;
+
+    /**
+     * Creates cache with its own background thread, which is stopped by {@link #close()}.
+     */
+    public DirAttributeCache(DirTreeModel<T> model) {
+        this(model, Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "dir-tree-attributes");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }), true);
+    }
+
+    /**
+     * @param executor Executor to read the attributes.
+     */
+    public DirAttributeCache(DirTreeModel<T> model, Executor executor) {
+        this(model, executor, false);
+    }
+
+    private DirAttributeCache(DirTreeModel<T> model, Executor executor, boolean ownExecutor) {
+        this.model = requireNonNull(model);
+        this.executor = requireNonNull(executor);
+        this.ownExecutor = ownExecutor;
+    }
+
+    /**
+     * @param millis Time after which the attributes are read again by {@link #load(Collection)}. Default:
+     * {@link #DEFAULT_TIME_TO_LIVE_MILLIS}.
+     */
+    public void setTimeToLive(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Negative time to live");
+        }
+        this.timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * @see #setTimeToLive(long)
+     */
+    public long getTimeToLive() {
+        return TimeUnit.NANOSECONDS.toMillis(timeToLiveNanos);
+    }
+
+    /**
+     * @param countItems {@code true} to count the entries of the directories (see {@link DirAttributes#getItemCount()})
+     * when loading their attributes. Requires a listing of each directory. Default: {@code false}.
+     */
+    public void setCountItems(boolean countItems) {
+        this.countItems = countItems;
+    }
+
+    /**
+     * @see #setCountItems(boolean)
+     */
+    public boolean isCountItems() {
+        return countItems;
+    }
+
+    /**
+     * Doesn't access the filesystem, so it can be invoked by the renderer.
+     *
+     * @return Cached (possibly expired) attributes of the node or {@code null} if they are not loaded yet or cannot
+     * be read.
+     */
+    public DirAttributes getAttributes(T node) {
+        Path dir = node.getDirectory();
+        Entry entry = dir != null ? cache.get(dir) : null;
+        return entry != null ? entry.attributes : null;
+    }
+
+    /**
+     * Loads the attributes of the rows of the tree which are currently visible. Should be invoked on the EDT, e.g.
+     * when the viewport of the tree changes.
+     *
+     * @param tree Tree which displays the model.
+     * @see #load(Collection)
+     */
+    public CompletableFuture<Void> loadVisibleRows(JTree tree) {
+        if (tree.getModel() != model || tree.getRowCount() == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Rectangle visible = tree.getVisibleRect();
+        int first = tree.getClosestRowForLocation(visible.x, visible.y);
+        int last = tree.getClosestRowForLocation(visible.x, visible.y + Math.max(visible.height - 1, 0));
+        List<T> nodes = new ArrayList<>(Math.max(last - first + 1, 0));
+        for (int row = Math.max(first, 0); row <= last; row++) {
+            TreePath path = tree.getPathForRow(row);
+            if (path != null) {
+                @SuppressWarnings("unchecked")
+                T node = (T) path.getLastPathComponent(); // the tree displays the model
+                nodes.add(node);
+            }
+        }
+        return load(nodes);
+    }
+
+    /**
+     * Reads the missing or expired attributes of the nodes in background, in a single batch. The nodes which are
+     * being loaded already are skipped. Once the batch is read, {@code treeNodesChanged} events are fired for its
+     * nodes on the EDT.
+     *
+     * @return Future completed after the events are fired.
+     */
+    public CompletableFuture<Void> load(Collection<T> nodes) {
+        if (closed) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long now = System.nanoTime();
+        Map<Path, T> batch = new LinkedHashMap<>();
+        for (T node : nodes) {
+            Path dir = node.getDirectory();
+            if (dir != null && !isFresh(cache.get(dir), now) && pending.add(dir)) {
+                batch.put(dir, node);
+            }
+        }
+        if (batch.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> batch.keySet().forEach(this::read), executor)
+                .whenComplete((ignored, ex) -> pending.removeAll(batch.keySet()))
+                .thenRunAsync(() -> {
+                    if (!closed) {
+                        batch.values().forEach(model::nodeChanged);
+                    }
+                }, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Removes the cached attributes of the directory.
+     */
+    public void invalidate(Path directory) {
+        cache.remove(directory);
+    }
+
+    /**
+     * Clears the cache. Stops the background thread if it was created by this cache.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        cache.clear();
+        if (ownExecutor) {
+            ((ExecutorService) executor).shutdownNow();
+        }
+    }
+
+    private boolean isFresh(Entry entry, long now) {
+        return entry != null && now - entry.time < timeToLiveNanos
+                && (!countItems || entry.attributes == null || entry.attributes.getItemCount() >= 0);
+    }
+
+    /**
+     * Receives the attributes read by the model while listing a directory.
+     */
+    void listed(Path dir, BasicFileAttributes attrs) {
+        if (closed || countItems) {
+            return;
+        }
+        if (attrs instanceof PosixFileAttributes) {
+            put(dir, new DirAttributes((PosixFileAttributes) attrs, -1)); // the owner is resolved when displayed
+        } else if (dir.getFileSystem().supportedFileAttributeViews().contains("owner")) {
+            return; // e.g. DOS attributes - the owner will be read with the batch
+        } else {
+            put(dir, new DirAttributes(attrs.lastModifiedTime(), attrs.size(), null, -1));
+        }
+    }
+
+    private void read(Path dir) {
+        if (closed) {
+            return;
+        }
+        DirAttributes attributes;
+        try {
+            Set<String> views = dir.getFileSystem().supportedFileAttributeViews();
+            BasicFileAttributes attrs;
+            UserPrincipal owner = null;
+            if (views.contains("posix")) {
+                PosixFileAttributes posix = Files.readAttributes(dir, PosixFileAttributes.class);
+                owner = posix.owner();
+                attrs = posix;
+            } else {
+                attrs = Files.readAttributes(dir, BasicFileAttributes.class);
+                if (views.contains("owner")) {
+                    owner = Files.getOwner(dir);
+                }
+            }
+            attributes = new DirAttributes(attrs.lastModifiedTime(), attrs.size(), owner,
+                    countItems ? countEntries(dir) : -1);
+        } catch (IOException | RuntimeException e) {
+            attributes = null; // not accessible - don't retry until expired
+        }
+        put(dir, attributes);
+    }
+
+    private static int countEntries(Path dir) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path ignored : stream) {
+                count++;
+            }
+        } catch (DirectoryIteratorException e) {
+            throw e.getCause();
+        }
+        return count;
+    }
+
+    private void put(Path dir, DirAttributes attributes) {
+        cache.put(dir, new Entry(attributes));
+        if (cache.size() > purgeSize) {
+            purgeExpired();
+        }
+    }
+
+    private synchronized void purgeExpired() {
+        if (cache.size() <= purgeSize) {
+            return;
+        }
+        long now = System.nanoTime();
+        long ttl = timeToLiveNanos;
+        cache.values().removeIf(entry -> now - entry.time >= ttl);
+        purgeSize = Math.max(MIN_PURGE_SIZE, cache.size() * 2);
+    }
+
+    private static final class Entry {
+        final DirAttributes attributes; // null if cannot be read
+        final long time = System.nanoTime();
+
+        Entry(DirAttributes attributes) {
+            this.attributes = attributes;
+        }
+    }
+}
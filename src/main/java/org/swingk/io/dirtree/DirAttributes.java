@@ -0,0 +1,85 @@
+package org.swingk.io.dirtree;
+
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.UserPrincipal;
+
+/**
+ * Attributes of a directory displayed e.g. in the columns of a tree-table. Immutable. The owner read while listing
+ * is resolved (e.g. its name is looked up in the user database) on first access.
+ *
+ * @see DirAttributeCache
+ */
+public final class DirAttributes {
+    private final FileTime lastModifiedTime;
+    private final long size;
+    private volatile Object owner; // UserPrincipal, PosixFileAttributes to resolve it or null
+    private final int itemCount;
+
+    DirAttributes(FileTime lastModifiedTime, long size, UserPrincipal owner, int itemCount) {
+        this(lastModifiedTime, size, (Object) owner, itemCount);
+    }
+
+    /**
+     * @param attrs Attributes whose owner is resolved on demand.
+     */
+    DirAttributes(PosixFileAttributes attrs, int itemCount) {
+        this(attrs.lastModifiedTime(), attrs.size(), attrs, itemCount);
+    }
+
+    private DirAttributes(FileTime lastModifiedTime, long size, Object owner, int itemCount) {
+        this.lastModifiedTime = lastModifiedTime;
+        this.size = size;
+        this.owner = owner;
+        this.itemCount = itemCount;
+    }
+
+    /**
+     * @return Last modified time of the directory.
+     */
+    public FileTime getLastModifiedTime() {
+        return lastModifiedTime;
+    }
+
+    /**
+     * @return Size of the directory entry itself, as reported by the filesystem (not the total size of its files,
+     * see {@link DirSizeAggregator}).
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return Name of the owner or {@code null} if the filesystem doesn't support owners.
+     */
+    public String getOwner() {
+        UserPrincipal principal = getOwnerPrincipal();
+        return principal != null ? principal.getName() : null;
+    }
+
+    /**
+     * @return Owner or {@code null} if the filesystem doesn't support owners.
+     */
+    public UserPrincipal getOwnerPrincipal() {
+        Object o = owner;
+        if (o instanceof PosixFileAttributes) {
+            o = ((PosixFileAttributes) o).owner();
+            owner = o;
+        }
+        return (UserPrincipal) o;
+    }
+
+    /**
+     * @return Number of the entries (files and directories, regardless of the model filter) in the directory or -1 if
+     * not counted (see {@link DirAttributeCache#setCountItems(boolean)}).
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    @Override
+    public String toString() {
+        return "DirAttributes{lastModified=" + lastModifiedTime + ", size=" + size + ", owner=" + getOwner()
+                + ", items=" + itemCount + "}";
+    }
+}
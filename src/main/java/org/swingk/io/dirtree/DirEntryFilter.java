@@ -0,0 +1,93 @@
+package org.swingk.io.dirtree;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Additional filter of the directories of {@link DirTreeModel}. The filter has two stages:
+ * <ol>
+ * <li>{@link #acceptName(String)} - evaluated on the name of the directory entry, before any I/O. The entries
+ * rejected at this stage cost no system calls;</li>
+ * <li>{@link #acceptAttributes(Path, BasicFileAttributes)} - evaluated on the attributes of the directories which
+ * pass the first stage and the built-in checks of the model (hidden, system, permissions).</li>
+ * </ol>
+ * Filters are combined via {@link #and(DirEntryFilter)}, e.g.:
+ * <pre>{@code
+ * DirEntryFilter.excludeNames("node_modules", ".git", "@eaDir").and(DirEntryFilter.excludeGlob("*.snapshot"))
+ * }</pre>
+ * Implementations must be thread safe.
+ *
+ * @see DirTreeModel#DirTreeModel(java.util.Comparator, boolean, boolean, DirEntryFilter, DirNodeFactory)
+ */
+public interface DirEntryFilter {
+
+    /**
+     * Filter which accepts all the directories.
+     */
+    DirEntryFilter ACCEPT_ALL = name -> true;
+
+    /**
+     * @param name Name of the directory entry (the last element of its path).
+     * @return {@code false} to reject the entry without reading its attributes.
+     */
+    boolean acceptName(String name);
+
+    /**
+     * @param path Directory which passed {@link #acceptName(String)}.
+     * @param attrs Attributes of the directory.
+     * @return {@code false} to reject the directory.
+     */
+    default boolean acceptAttributes(Path path, BasicFileAttributes attrs) {
+        return true;
+    }
+
+    /**
+     * @return Filter which accepts the directories accepted by this and the other filter. The name stages of both
+     * filters are evaluated before the attribute stages.
+     */
+    default DirEntryFilter and(DirEntryFilter other) {
+        requireNonNull(other);
+        DirEntryFilter first = this;
+        return new DirEntryFilter() {
+            @Override
+            public boolean acceptName(String name) {
+                return first.acceptName(name) && other.acceptName(name);
+            }
+
+            @Override
+            public boolean acceptAttributes(Path path, BasicFileAttributes attrs) {
+                return first.acceptAttributes(path, attrs) && other.acceptAttributes(path, attrs);
+            }
+        };
+    }
+
+    /**
+     * @param names Names to reject (case sensitive).
+     */
+    static DirEntryFilter excludeNames(String... names) {
+        Set<String> excluded = Set.of(names);
+        return name -> !excluded.contains(name);
+    }
+
+    /**
+     * @param regex Pattern of the names to reject. The whole name must match.
+     */
+    static DirEntryFilter excludeRegex(Pattern regex) {
+        requireNonNull(regex);
+        return name -> !regex.matcher(name).matches();
+    }
+
+    /**
+     * @param glob Glob pattern of the names to reject: {@code *} matches any sequence of characters, {@code ?} - any
+     * single character, {@code [...]} - any character of the set (e.g. {@code [a-z]}, {@code [!0-9]}, {@code []a]} -
+     * a leading {@code ]} is a member of the set), other characters match themselves.
+     * @throws IllegalArgumentException If a set isn't closed.
+     */
+    static DirEntryFilter excludeGlob(String glob) {
+        return excludeRegex(Pattern.compile(DirTreeUtils.globToRegex(glob)));
+    }
+}
@@ -5,26 +5,61 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.DosFileAttributes;
 import java.nio.file.attribute.PosixFileAttributes;
 import java.nio.file.attribute.PosixFilePermission;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 final class DirFilter implements DirectoryStream.Filter<Path> {
 
     /**
-     * True for *NIX based, false for DOS based file system.
+     * Attribute view which the filter uses for a file system.
      */
-    private final boolean isPosix;
+    private enum View {
+        /**
+         * *NIX based file system - hidden by name, permissions are checked.
+         */
+        POSIX,
+        /**
+         * DOS based file system - hidden and system attributes are checked.
+         */
+        DOS,
+        /**
+         * Other file systems (e.g. ZIP) - hidden by name.
+         */
+        BASIC
+    }
 
+    private final Map<FileSystem, View> views = new ConcurrentHashMap<>();
     private final boolean showHidden;
     private final boolean showSystem;
+    private final DirEntryFilter entryFilter;
+
+    DirFilter(boolean showHidden, boolean showSystem) {
+        this(showHidden, showSystem, DirEntryFilter.ACCEPT_ALL);
+    }
 
-    DirFilter(FileSystem fs, boolean showHidden, boolean showSystem) {
-        // we need to determine whether we are on a posix system, else use DOS
-        this.isPosix = fs.supportedFileAttributeViews().contains("posix");
+    DirFilter(boolean showHidden, boolean showSystem, DirEntryFilter entryFilter) {
         this.showHidden = showHidden;
         this.showSystem = showSystem;
+        this.entryFilter = entryFilter;
+    }
+
+    private View viewOf(Path path) {
+        return views.computeIfAbsent(path.getFileSystem(), fs -> {
+            Set<String> supported = fs.supportedFileAttributeViews();
+            return supported.contains("posix") ? View.POSIX : supported.contains("dos") ? View.DOS : View.BASIC;
+        });
+    }
+
+    /**
+     * @return {@code true} if the path belongs to a *NIX based file system.
+     */
+    boolean isPosix(Path path) {
+        return viewOf(path) == View.POSIX;
     }
 
     @Override
@@ -32,25 +67,79 @@ final class DirFilter implements DirectoryStream.Filter<Path> {
         if (path.getNameCount() == 0) {
             return true; // filesystem root always passes the filter
         }
-        if (isPosix) {
-            // POSIX related filesystem checks (MacOS/*NIX)
-            PosixFileAttributes attrs;
-            try {
-                attrs = Files.readAttributes(path, PosixFileAttributes.class);
-            } catch (IOException ex) {
-                return false;
+        if (!acceptName(path)) {
+            return false;
+        }
+        BasicFileAttributes attrs;
+        try {
+            switch (viewOf(path)) {
+                case POSIX:
+                    attrs = Files.readAttributes(path, PosixFileAttributes.class);
+                    break;
+                case DOS:
+                    attrs = Files.readAttributes(path, DosFileAttributes.class);
+                    break;
+                default:
+                    attrs = Files.readAttributes(path, BasicFileAttributes.class);
             }
-            return attrs.isDirectory() && (showHidden || !DirTreeUtils.getName(path).startsWith(".")) &&
-                    checkPosixPermissions(attrs.permissions());
-        } else {
-            // DOS related filesystem permission checking
-            DosFileAttributes attrs;
-            try {
-                attrs = Files.readAttributes(path, DosFileAttributes.class);
-            } catch (IOException ex) {
-                return false;
+        } catch (IOException ex) {
+            return false;
+        }
+        return acceptAttributes(path, attrs);
+    }
+
+    /**
+     * @return Key of the built-in part of the filter, which a listing stored in {@link ListingSnapshot} must match.
+     * The {@link DirEntryFilter} can't be compared, so its name stage is applied to the stored listing again.
+     */
+    byte getSnapshotKey() {
+        return (byte) ((showHidden ? 1 : 0) | (showSystem ? 2 : 0));
+    }
+
+    /**
+     * Checks the parts of the filter which do not require any I/O.
+     *
+     * @return {@code false} if the path is rejected by its name alone.
+     */
+    boolean acceptName(Path path) {
+        String name = DirTreeUtils.getName(path);
+        // except DOS, hidden files are recognized by their names
+        return (showHidden || !name.startsWith(".") || viewOf(path) == View.DOS) && entryFilter.acceptName(name);
+    }
+
+    /**
+     * Checks the parts of the filter which require the file attributes. Assumes that the path has passed
+     * {@link #acceptName(Path)}.
+     *
+     * @param attrs Attributes of the path. If they are not {@link PosixFileAttributes} (POSIX) or
+     * {@link DosFileAttributes} (DOS), the missing attributes are read only when the path is a directory.
+     */
+    boolean acceptAttributes(Path path, BasicFileAttributes attrs) {
+        return checkAttributes(path, attrs) && entryFilter.acceptAttributes(path, attrs);
+    }
+
+    private boolean checkAttributes(Path path, BasicFileAttributes attrs) {
+        if (!attrs.isDirectory()) {
+            return false;
+        }
+        View view = viewOf(path);
+        if (view == View.BASIC) {
+            return true;
+        }
+        try {
+            if (view == View.POSIX) {
+                // POSIX related filesystem checks (MacOS/*NIX)
+                PosixFileAttributes posixAttrs = attrs instanceof PosixFileAttributes ? (PosixFileAttributes) attrs :
+                        Files.readAttributes(path, PosixFileAttributes.class);
+                return checkPosixPermissions(posixAttrs.permissions());
+            } else {
+                // DOS related filesystem permission checking
+                DosFileAttributes dosAttrs = attrs instanceof DosFileAttributes ? (DosFileAttributes) attrs :
+                        Files.readAttributes(path, DosFileAttributes.class);
+                return (showHidden || !dosAttrs.isHidden()) && (showSystem || !dosAttrs.isSystem());
             }
-            return attrs.isDirectory() && (showHidden || !attrs.isHidden()) && (showSystem || !attrs.isSystem());
+        } catch (IOException ex) {
+            return false;
         }
     }
 
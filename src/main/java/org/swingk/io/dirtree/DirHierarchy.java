@@ -0,0 +1,490 @@
+package org.swingk.io.dirtree;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+import static java.util.Objects.requireNonNull;
+import static org.swingk.io.dirtree.DirTreeUtils.NAME_ORDER;
+
+/**
+ * Headless hierarchy of directories: lists the subdirectories of a directory lazily, filtered and sorted the same way
+ * as {@link DirTreeModel} does, and caches the listings and leaf statuses. Doesn't depend on {@code java.desktop}
+ * module, so it can be used e.g. by a server-side service which provides a directory picker to web clients.
+ * {@link DirTreeModel} is a Swing {@code TreeModel} on top of this hierarchy (see
+ * {@link DirTreeModel#getHierarchy()}).
+ * <p>
+ * Several models can share one hierarchy (see {@link DirTreeModel#DirTreeModel(DirHierarchy, DirNodeFactory)}), so
+ * that a directory is listed once for all of them. The cached listing of a directory is kept while any of the models
+ * has the directory populated. Once no model references it, it is retained only within the limit of
+ * {@link #setMaxCachedDirectories(int)}.
+ * <p>
+ * Thread safe.
+ */
+public class DirHierarchy {
+    /**
+     * Default max. number of the cached directories which are not referenced by any model.
+     *
+     * @see #setMaxCachedDirectories(int)
+     */
+    public static final int DEFAULT_MAX_CACHED_DIRECTORIES = 10_000;
+
+    private final List<FileSystem> fileSystems;
+    private final Comparator<Path> pathComparator;
+    private final DirFilter filter;
+    private final DirLister lister;
+    private final Map<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // guarded by itself
+    private int referencedCount; // guarded by entries
+    private volatile int maxCachedDirectories;
+    private volatile LeafProbe leafProbe = LeafProbe.exact();
+    private volatile ListingSnapshot listingSnapshot;
+    private volatile DirTreeMetrics metrics = DirTreeMetrics.NONE;
+    private volatile BiConsumer<Path, BasicFileAttributes> attributeSink;
+
+    /**
+     * Creates hierarchy of the default filesystem, which shows the directories which are not hidden, in the order of
+     * {@link DirTreeUtils#NAME_ORDER}.
+     */
+    public DirHierarchy() {
+        this(List.of(FileSystems.getDefault()), NAME_ORDER, false, false, DirEntryFilter.ACCEPT_ALL);
+    }
+
+    /**
+     * @param fileSystems Filesystems of the hierarchy. The hierarchy doesn't close them.
+     * @param pathComparator Order of the subdirectories.
+     * @param showHidden Show hidden directories.
+     * @param showSystem Show system directories (ignored for POSIX filesystem).
+     * @param entryFilter Additional filter of the directories.
+     * @see DirTreeModel#DirTreeModel(List, Comparator, boolean, boolean, DirEntryFilter, DirNodeFactory)
+     */
+    public DirHierarchy(List<FileSystem> fileSystems, Comparator<Path> pathComparator, boolean showHidden,
+                        boolean showSystem, DirEntryFilter entryFilter) {
+        this(fileSystems, pathComparator, showHidden, showSystem, entryFilter, DEFAULT_MAX_CACHED_DIRECTORIES);
+    }
+
+    DirHierarchy(List<FileSystem> fileSystems, Comparator<Path> pathComparator, boolean showHidden,
+                 boolean showSystem, DirEntryFilter entryFilter, int maxCachedDirectories) {
+        if (fileSystems.isEmpty()) {
+            throw new IllegalArgumentException("No filesystems");
+        }
+        this.fileSystems = List.copyOf(fileSystems);
+        this.pathComparator = requireNonNull(pathComparator);
+        this.filter = new DirFilter(showHidden, showSystem, requireNonNull(entryFilter));
+        this.lister = new DirLister(filter);
+        setMaxCachedDirectories(maxCachedDirectories);
+    }
+
+    /**
+     * @return Filesystems of the hierarchy.
+     */
+    public List<FileSystem> getFileSystems() {
+        return fileSystems;
+    }
+
+    /**
+     * @return Order of the subdirectories.
+     */
+    public Comparator<Path> getComparator() {
+        return pathComparator;
+    }
+
+    /**
+     * @return Sorted root directories of the filesystem (e.g. 'C:\', 'D:\' on Windows).
+     */
+    public List<Path> getRootDirectories(FileSystem fs) {
+        var rootDirs = new ArrayList<Path>();
+        fs.getRootDirectories().forEach(rootDirs::add);
+        DirTreeUtils.sort(rootDirs, pathComparator);
+        return rootDirs;
+    }
+
+    /**
+     * @return {@code true} if the directory passes the filter of the hierarchy (its ancestors are not checked).
+     */
+    public boolean accept(Path directory) {
+        return filter.accept(directory);
+    }
+
+    /**
+     * @return Sorted subdirectories of the directory which pass the filter. The listing is cached.
+     * @throws IOException If the directory cannot be listed.
+     * @see #invalidate(Path)
+     */
+    public List<Path> getChildren(Path directory) throws IOException {
+        return getChildren(directory, null);
+    }
+
+    /**
+     * @param observer If not {@code null}, receives the subdirectories while they are listed (not invoked if the
+     * listing is cached).
+     * @see #getChildren(Path)
+     */
+    List<Path> getChildren(Path directory, Predicate<Path> observer) throws IOException {
+        synchronized (entries) {
+            Entry entry = entries.get(directory);
+            if (entry != null && entry.children != null) {
+                return entry.children;
+            }
+        }
+        List<Path> children = Collections.unmodifiableList(list(directory, null, Integer.MAX_VALUE, observer));
+        synchronized (entries) {
+            Entry entry = entries.get(directory);
+            if (entry != null || maxCachedDirectories > 0) {
+                if (entry == null) {
+                    entry = new Entry();
+                    entries.put(directory, entry);
+                }
+                entry.children = children;
+                entry.leaf = null;
+                trim();
+            }
+        }
+        return children;
+    }
+
+    /**
+     * @return {@code true} if the directory has no subdirectories which pass the filter. Determined by the cached
+     * listing, if available, otherwise by {@link ListingSnapshot} or {@link LeafProbe}. The result is cached.
+     * A directory which cannot be accessed is a leaf.
+     */
+    public boolean isLeaf(Path directory) {
+        Boolean leaf = getKnownLeaf(directory);
+        if (leaf != null) {
+            return leaf;
+        }
+        leaf = probeLeaf(directory);
+        synchronized (entries) {
+            Entry entry = entries.get(directory);
+            if (entry != null || maxCachedDirectories > 0) {
+                if (entry == null) {
+                    entry = new Entry();
+                    entries.put(directory, entry);
+                }
+                if (entry.children == null) {
+                    entry.leaf = leaf;
+                }
+                trim();
+            }
+        }
+        return leaf;
+    }
+
+    /**
+     * @return Leaf status of the directory which is known without any I/O (from the cache or the snapshot) or
+     * {@code null}. Only the snapshot hints that the directory is not a leaf are used, the others may be stale.
+     */
+    Boolean getKnownLeaf(Path directory) {
+        synchronized (entries) {
+            Entry entry = entries.get(directory);
+            if (entry != null) {
+                if (entry.children != null) {
+                    return entry.children.isEmpty();
+                }
+                if (entry.leaf != null) {
+                    return entry.leaf;
+                }
+            }
+        }
+        ListingSnapshot snapshot = snapshotOf(directory);
+        return snapshot != null && Boolean.FALSE.equals(snapshot.isLeaf(directory)) ? Boolean.FALSE : null;
+    }
+
+    /**
+     * Removes the cached listing and leaf status of the directory, e.g. when its subdirectories have changed.
+     */
+    public void invalidate(Path directory) {
+        synchronized (entries) {
+            Entry entry = entries.get(directory);
+            if (entry != null) {
+                entry.children = null;
+                entry.leaf = null;
+                if (entry.references == 0) {
+                    entries.remove(directory);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all the cached listings and leaf statuses.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.values().removeIf(entry -> {
+                entry.children = null;
+                entry.leaf = null;
+                return entry.references == 0;
+            });
+        }
+    }
+
+    /**
+     * Marks the directory as referenced by a model, so that its listing is kept in the cache until it is released.
+     *
+     * @see #release(Path)
+     */
+    void retain(Path directory) {
+        synchronized (entries) {
+            Entry entry = entries.computeIfAbsent(directory, d -> new Entry());
+            if (entry.references++ == 0) {
+                referencedCount++;
+            }
+        }
+    }
+
+    /**
+     * @see #retain(Path)
+     */
+    void release(Path directory) {
+        synchronized (entries) {
+            Entry entry = entries.get(directory);
+            if (entry == null || entry.references == 0) {
+                return;
+            }
+            if (--entry.references == 0) {
+                referencedCount--;
+                if (entry.children == null && entry.leaf == null) {
+                    entries.remove(directory);
+                }
+                trim();
+            }
+        }
+    }
+
+    /**
+     * @return Number of the cached directories, including the ones referenced by the models.
+     */
+    public int getCachedDirectoryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @param max Max. number of the cached directories which are not referenced by any model. The least recently used
+     * ones are evicted. 0 - cache only the directories referenced by the models.
+     */
+    public void setMaxCachedDirectories(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("Negative max. directories");
+        }
+        this.maxCachedDirectories = max;
+        synchronized (entries) {
+            trim();
+        }
+    }
+
+    /**
+     * @see #setMaxCachedDirectories(int)
+     */
+    public int getMaxCachedDirectories() {
+        return maxCachedDirectories;
+    }
+
+    private void trim() {
+        int excess = entries.size() - referencedCount - maxCachedDirectories;
+        for (var it = entries.values().iterator(); excess > 0 && it.hasNext(); ) {
+            if (it.next().references == 0) {
+                it.remove();
+                excess--;
+            }
+        }
+    }
+
+    /**
+     * @see DirTreeModel#setLeafProbe(LeafProbe)
+     */
+    public void setLeafProbe(LeafProbe leafProbe) {
+        this.leafProbe = requireNonNull(leafProbe);
+    }
+
+    /**
+     * @see #setLeafProbe(LeafProbe)
+     */
+    public LeafProbe getLeafProbe() {
+        return leafProbe;
+    }
+
+    /**
+     * @see DirTreeModel#setListingSnapshot(ListingSnapshot)
+     */
+    public void setListingSnapshot(ListingSnapshot snapshot) {
+        this.listingSnapshot = snapshot;
+    }
+
+    /**
+     * @see #setListingSnapshot(ListingSnapshot)
+     */
+    public ListingSnapshot getListingSnapshot() {
+        return listingSnapshot;
+    }
+
+    /**
+     * @see DirTreeModel#setMetrics(DirTreeMetrics)
+     */
+    public void setMetrics(DirTreeMetrics metrics) {
+        this.metrics = requireNonNull(metrics);
+    }
+
+    /**
+     * @see #setMetrics(DirTreeMetrics)
+     */
+    public DirTreeMetrics getMetrics() {
+        return metrics;
+    }
+
+    DirLister getLister() {
+        return lister;
+    }
+
+    /**
+     * @param sink Receives the attributes of the subdirectories read by the filter during the listings or
+     * {@code null}.
+     */
+    void setAttributeSink(BiConsumer<Path, BasicFileAttributes> sink) {
+        this.attributeSink = sink;
+    }
+
+    /**
+     * @return Snapshot for the directory or {@code null}. The snapshot stores the directories of the filesystem of
+     * its file only.
+     */
+    private ListingSnapshot snapshotOf(Path dir) {
+        ListingSnapshot snapshot = listingSnapshot;
+        return snapshot != null && snapshot.getFile().getFileSystem() == dir.getFileSystem() ? snapshot : null;
+    }
+
+    /**
+     * Lists the directory (not cached).
+     *
+     * @param after If not {@code null}, only the subdirectories which follow it in the page order are listed.
+     * @param limit Max. number of the first subdirectories (in the page order) to list. {@link Integer#MAX_VALUE} -
+     * all subdirectories.
+     * @param observer If not {@code null}, receives the subdirectories of a complete listing while they are listed.
+     * Not invoked when the listing is served from the snapshot.
+     * @return Sorted subdirectories.
+     * @see PageCollector
+     */
+    List<Path> list(Path dir, Path after, int limit, Predicate<Path> observer) throws IOException {
+        if (after == null && limit == Integer.MAX_VALUE) {
+            return list(dir, null, observer);
+        }
+        PageCollector<?> page = PageCollector.create(pathComparator, after, null, limit);
+        list(dir, page, null);
+        return page.getPaths();
+    }
+
+    /**
+     * Lists the subdirectories of the directory into the collector (not cached).
+     */
+    void list(Path dir, PageCollector<?> page) throws IOException {
+        list(dir, page, null);
+    }
+
+    /**
+     * @param page Collector of the page or {@code null} to list all the subdirectories.
+     * @return Sorted subdirectories if all the subdirectories are listed, otherwise {@code null}.
+     */
+    private List<Path> list(Path dir, PageCollector<?> page, Predicate<Path> observer) throws IOException {
+        DirTreeMetrics m = metrics;
+        Object event = Jfr.beginListing();
+        long start = m != DirTreeMetrics.NONE ? System.nanoTime() : 0L;
+        ListingStats stats = new ListingStats();
+        boolean fromSnapshot = false;
+        List<Path> children = null;
+        try {
+            ListingSnapshot snapshot = snapshotOf(dir);
+            FileTime lastModified = null;
+            List<Path> all = null;
+            if (snapshot != null) {
+                lastModified = Files.getLastModifiedTime(dir);
+                all = snapshot.getChildren(dir, lastModified, filter.getSnapshotKey());
+                if (all != null) {
+                    fromSnapshot = true;
+                    all.removeIf(child -> !filter.acceptName(child));
+                    stats.accepted = all.size();
+                }
+            }
+            BiConsumer<Path, BasicFileAttributes> sink = attributeSink;
+            if (page == null) {
+                if (all == null) {
+                    List<Path> listed = new ArrayList<>();
+                    lister.forEach(dir, Integer.MAX_VALUE, observer != null ?
+                            child -> listed.add(child) && observer.test(child) : listed::add, stats, sink);
+                    all = listed;
+                    if (snapshot != null) {
+                        snapshot.putChildren(dir, lastModified, filter.getSnapshotKey(), all);
+                    }
+                }
+                DirTreeUtils.sort(all, pathComparator);
+                children = all;
+            } else if (all != null) {
+                all.forEach(page::test);
+            } else {
+                lister.forEach(dir, Integer.MAX_VALUE, page, stats, sink);
+            }
+        } catch (IOException e) {
+            if (m != DirTreeMetrics.NONE) {
+                m.directoryListingFailed(dir, System.nanoTime() - start);
+            }
+            Jfr.commitListing(event, dir, stats, false);
+            throw e;
+        }
+        if (m != DirTreeMetrics.NONE) {
+            if (fromSnapshot) {
+                m.snapshotHit(dir);
+            } else {
+                m.directoryListed(dir, stats.entries, stats.accepted, stats.attributeReads, System.nanoTime() - start);
+            }
+        }
+        Jfr.commitListing(event, dir, stats, fromSnapshot);
+        return children;
+    }
+
+    /**
+     * Determines leaf status of the directory by {@link LeafProbe} (not cached) and records it in the snapshot.
+     */
+    boolean probeLeaf(Path dir) {
+        DirTreeMetrics m = metrics;
+        Object event = Jfr.beginLeafProbe();
+        long start = m != DirTreeMetrics.NONE ? System.nanoTime() : 0L;
+        boolean leaf;
+        boolean failed = false;
+        try {
+            leaf = leafProbe.isLeaf(dir, filter);
+        } catch (IOException e) {
+            leaf = true;
+            failed = true;
+        }
+        if (m != DirTreeMetrics.NONE) {
+            m.leafProbed(dir, leaf, System.nanoTime() - start);
+        }
+        Jfr.commitLeafProbe(event, dir, leaf);
+        ListingSnapshot snapshot = snapshotOf(dir);
+        if (snapshot != null && !failed) {
+            snapshot.putLeaf(dir, leaf);
+        }
+        return leaf;
+    }
+
+    /**
+     * Cached listing or leaf status of a directory.
+     */
+    private static final class Entry {
+        List<Path> children;
+        Boolean leaf;
+        int references;
+    }
+}
@@ -0,0 +1,240 @@
+package org.swingk.io.dirtree;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SecureDirectoryStream;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Lists subdirectories which pass {@link DirFilter}, reading as few file attributes as possible:
+ * <ul>
+ * <li>entries rejected by their names (e.g. hidden entries on POSIX) are skipped without any I/O;</li>
+ * <li>on POSIX, the attributes of the remaining entries are read relative to the open directory (via
+ * {@link SecureDirectoryStream}, where supported), i.e. without a lookup of the full path for each entry;</li>
+ * <li>elsewhere (e.g. Windows), the directory is walked via {@link Files#walkFileTree} with depth 1, so the
+ * attributes which the platform returns together with the directory entries are used without any extra calls.</li>
+ * </ul>
+ * Other filters are applied to the entries of a plain {@link DirectoryStream}.
+ */
+final class DirLister {
+
+    private final DirectoryStream.Filter<? super Path> filter;
+    private final DirFilter dirFilter;
+
+    DirLister(DirectoryStream.Filter<? super Path> filter) {
+        this.filter = filter;
+        this.dirFilter = filter instanceof DirFilter ? (DirFilter) filter : null;
+    }
+
+    /**
+     * @return Accepted subdirectories of the directory (unsorted).
+     */
+    List<Path> list(Path dir) throws IOException {
+        return list(dir, new ListingStats());
+    }
+
+    /**
+     * @param stats Statistics of the listing to update.
+     * @return Accepted subdirectories of the directory (unsorted).
+     */
+    List<Path> list(Path dir, ListingStats stats) throws IOException {
+        List<Path> children = new ArrayList<>();
+        forEach(dir, Integer.MAX_VALUE, children::add, stats);
+        return children;
+    }
+
+    /**
+     * @return {@code true} if the directory has at least one accepted subdirectory.
+     */
+    boolean hasChildren(Path dir) throws IOException {
+        return Boolean.TRUE.equals(hasChildren(dir, Integer.MAX_VALUE));
+    }
+
+    /**
+     * @param maxEntries Maximal number of directory entries (accepted or not) to examine.
+     * @return {@link Boolean#TRUE} if the directory has at least one accepted subdirectory, {@link Boolean#FALSE} if
+     * it has none, {@code null} if no accepted subdirectory was found among the first {@code maxEntries} entries.
+     */
+    Boolean hasChildren(Path dir, int maxEntries) throws IOException {
+        boolean[] found = {false};
+        boolean complete = forEach(dir, maxEntries, child -> {
+            found[0] = true;
+            return false;
+        });
+        return found[0] ? Boolean.TRUE : (complete ? Boolean.FALSE : null);
+    }
+
+    /**
+     * Passes accepted subdirectories of the directory to the action.
+     *
+     * @param maxEntries Maximal number of directory entries (accepted or not) to examine.
+     * @param action Returns {@code false} to stop the listing.
+     * @return {@code false} if the listing was stopped because {@code maxEntries} entries were examined.
+     */
+    boolean forEach(Path dir, int maxEntries, Predicate<Path> action) throws IOException {
+        return forEach(dir, maxEntries, action, new ListingStats());
+    }
+
+    /**
+     * Passes accepted subdirectories of the directory to the action.
+     *
+     * @param stats Statistics of the listing to update.
+     * @see #forEach(Path, int, Predicate)
+     */
+    boolean forEach(Path dir, int maxEntries, Predicate<Path> action, ListingStats stats) throws IOException {
+        return forEach(dir, maxEntries, action, stats, null);
+    }
+
+    /**
+     * Passes accepted subdirectories of the directory to the action.
+     *
+     * @param attributes If not {@code null}, receives the attributes of the accepted subdirectories which were read
+     * by the filter (before they are passed to the action).
+     * @see #forEach(Path, int, Predicate, ListingStats)
+     */
+    boolean forEach(Path dir, int maxEntries, Predicate<Path> action, ListingStats stats,
+                    BiConsumer<Path, BasicFileAttributes> attributes) throws IOException {
+        Predicate<Path> counting = child -> {
+            stats.accepted++;
+            return action.test(child);
+        };
+        if (dirFilter == null) {
+            return listFiltered(dir, maxEntries, counting, stats);
+        }
+        return dirFilter.isPosix(dir) ? listPosix(dir, maxEntries, counting, stats, attributes) :
+                walk(dir, maxEntries, counting, stats, attributes);
+    }
+
+    private boolean listFiltered(Path dir, int maxEntries, Predicate<Path> action, ListingStats stats)
+            throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path entry : stream) {
+                if (count++ == maxEntries) {
+                    return false;
+                }
+                stats.entries++;
+                stats.attributeReads++; // the filter may read the attributes
+                if (filter.accept(entry) && !action.test(entry)) {
+                    break;
+                }
+            }
+        } catch (DirectoryIteratorException e) {
+            throw e.getCause();
+        }
+        return true;
+    }
+
+    private boolean listPosix(Path dir, int maxEntries, Predicate<Path> action, ListingStats stats,
+                              BiConsumer<Path, BasicFileAttributes> attributes) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            SecureDirectoryStream<Path> secureStream = stream instanceof SecureDirectoryStream ?
+                    (SecureDirectoryStream<Path>) stream : null;
+            for (Path entry : stream) {
+                if (count++ == maxEntries) {
+                    return false;
+                }
+                stats.entries++;
+                if (!dirFilter.acceptName(entry)) {
+                    continue;
+                }
+                PosixFileAttributes attrs;
+                stats.attributeReads++;
+                try {
+                    attrs = readPosixAttributes(secureStream, entry);
+                } catch (IOException e) {
+                    continue;
+                }
+                if (dirFilter.acceptAttributes(entry, attrs)) {
+                    if (attributes != null) {
+                        attributes.accept(entry, attrs);
+                    }
+                    if (!action.test(entry)) {
+                        break;
+                    }
+                }
+            }
+        } catch (DirectoryIteratorException e) {
+            throw e.getCause();
+        }
+        return true;
+    }
+
+    private static PosixFileAttributes readPosixAttributes(SecureDirectoryStream<Path> secureStream, Path entry)
+            throws IOException {
+        if (secureStream != null) {
+            PosixFileAttributeView view = secureStream.getFileAttributeView(entry.getFileName(),
+                    PosixFileAttributeView.class);
+            if (view != null) {
+                return view.readAttributes();
+            }
+        }
+        return Files.readAttributes(entry, PosixFileAttributes.class);
+    }
+
+    private boolean walk(Path dir, int maxEntries, Predicate<Path> action, ListingStats stats,
+                         BiConsumer<Path, BasicFileAttributes> attributes) throws IOException {
+        boolean[] complete = {true};
+        Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1, new SimpleFileVisitor<>() {
+            private int count;
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (count++ == maxEntries) {
+                    complete[0] = false;
+                    return FileVisitResult.TERMINATE;
+                }
+                stats.entries++;
+                if (attrs.isDirectory() && !(attrs instanceof DosFileAttributes)) {
+                    stats.attributeReads++; // read by the filter
+                }
+                if (dirFilter.acceptName(file) && dirFilter.acceptAttributes(file, attrs)) {
+                    if (attributes != null) {
+                        attributes.accept(file, attrs);
+                    }
+                    if (!action.test(file)) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                if (file.equals(dir)) {
+                    throw exc; // the directory itself cannot be listed
+                }
+                if (count++ == maxEntries) {
+                    complete[0] = false;
+                    return FileVisitResult.TERMINATE;
+                }
+                stats.entries++;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return complete[0];
+    }
+}
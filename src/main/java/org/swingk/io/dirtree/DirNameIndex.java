@@ -0,0 +1,503 @@
+package org.swingk.io.dirtree;
+
+import javax.swing.tree.TreePath;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * In-memory index of directory names under the chosen roots, which allows to find directories by a part of their
+ * name (e.g. find-as-you-type). The directories are crawled in background (breadth first, on a single low priority
+ * thread) with the filter of the model, so the index contains the same directories as the model.
+ * <p>
+ * The index is compact: each directory takes 5 {@code int}s (parent, name, first child, next sibling, previous
+ * directory with the same name), while the distinct names are interned and stored once, in lower case, in a single
+ * text which is scanned by the queries. A query which extends the previous one (as the user types) checks only the
+ * names which matched the previous query. The index is kept up-to-date incrementally by {@link #update(Path)} and, if it is set via
+ * {@link DirTreeModel#setNameIndex(DirNameIndex)}, with the listings done by the model.
+ * <p>
+ * A directory reachable by several paths (e.g. via a symbolic link to its ancestor) is crawled once, as identified by
+ * {@link BasicFileAttributes#fileKey()}. If the filesystem doesn't provide the file keys, symbolic links to
+ * directories are not crawled.
+ * Thread safe.
+ */
+public final class DirNameIndex implements Closeable {
+    private static final char SEPARATOR = '\0'; // can't be a part of a name
+
+    private final DirTreeModel<?> model;
+    private final DirLister lister;
+    private final ExecutorService executor;
+
+    // directories: ID is the index in the arrays, IDs are assigned in the crawl order
+    private int[] parents = new int[1024];
+    private int[] names = new int[1024]; // -1 - removed directory
+    private int[] firstChildren = new int[1024];
+    private int[] nextSiblings = new int[1024];
+    private int[] previousWithName = new int[1024]; // chain of the directories with the same name
+    private int count;
+    private int crawled; // IDs below this one are crawled
+    private final Map<Integer, Path> roots = new HashMap<>();
+    private final Map<Object, Integer> crawledKeys = new HashMap<>(); // file key -> ID of the crawled directory
+
+    // distinct names
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private final List<String> nameList = new ArrayList<>();
+    private final StringBuilder text = new StringBuilder(); // lower case names, each followed by the separator
+    private int[] nameOffsets = new int[1024];
+    private int[] lastWithName = new int[1024]; // start of the chain of the directories with the name
+    private String textSnapshot = "";
+
+    // the previous query, to refine its result when the user types ahead
+    private String lastQuery;
+    private BitSet lastMatching;
+    private int lastNameCount;
+
+    private volatile boolean closed;
+
+    /**
+     * @param model Model whose filter is used to crawl the directories and which resolves the tree paths of the
+     * found directories.
+     */
+    public DirNameIndex(DirTreeModel<?> model) {
+        this.model = requireNonNull(model);
+        this.lister = model.getLister();
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "dir-tree-index");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    /**
+     * Adds the directory and its subdirectories (recursively) to the index.
+     *
+     * @param directory Absolute directory path.
+     * @return Future completed when the directory has been crawled.
+     */
+    public CompletableFuture<Void> addRoot(Path directory) {
+        requireNonNull(directory);
+        if (!directory.isAbsolute()) {
+            throw new IllegalArgumentException("The directory path must be absolute.");
+        }
+        return CompletableFuture.runAsync(() -> {
+            synchronized (this) {
+                if (findId(directory) >= 0) {
+                    return;
+                }
+                int id = add(-1, internName(directory.getFileName() != null ?
+                        DirTreeUtils.getName(directory) : directory.toString()));
+                roots.put(id, directory);
+            }
+            crawl();
+        }, executor);
+    }
+
+    /**
+     * Lists the directory again and updates its subdirectories in the index: the removed subdirectories (and their
+     * descendants) are removed from the index, the new ones are crawled. Does nothing if the directory is not in the
+     * index.
+     *
+     * @param directory Absolute directory path.
+     * @return Future completed when the index has been updated.
+     */
+    public CompletableFuture<Void> update(Path directory) {
+        requireNonNull(directory);
+        return CompletableFuture.runAsync(() -> {
+            List<Path> children;
+            try {
+                children = lister.list(directory);
+            } catch (IOException e) {
+                children = Collections.emptyList();
+            }
+            apply(directory, toNames(children));
+        }, executor);
+    }
+
+    /**
+     * Updates the index with the listing done by the model.
+     */
+    void listed(Path directory, List<Path> children) {
+        if (closed) {
+            return;
+        }
+        List<String> childNames = toNames(children);
+        executor.execute(() -> apply(directory, childNames));
+    }
+
+    private static List<String> toNames(List<Path> children) {
+        List<String> childNames = new ArrayList<>(children.size());
+        children.forEach(child -> childNames.add(DirTreeUtils.getName(child)));
+        return childNames;
+    }
+
+    private void apply(Path directory, List<String> childNames) {
+        synchronized (this) {
+            int id = findId(directory);
+            if (id < 0 || id >= crawled) {
+                return; // not in the index or not crawled yet
+            }
+            Set<String> current = new HashSet<>(childNames);
+            Set<String> existing = new HashSet<>();
+            int previous = -1;
+            boolean removed = false;
+            for (int child = firstChildren[id]; child >= 0; child = nextSiblings[child]) {
+                String name = nameList.get(names[child]);
+                if (current.contains(name)) {
+                    existing.add(name);
+                    previous = child;
+                } else {
+                    // unlink and remove the subtree
+                    if (previous < 0) {
+                        firstChildren[id] = nextSiblings[child];
+                    } else {
+                        nextSiblings[previous] = nextSiblings[child];
+                    }
+                    names[child] = -1;
+                    removed = true;
+                }
+            }
+            if (removed) {
+                removeDescendants(id + 1);
+            }
+            for (String name : childNames) {
+                if (!existing.contains(name)) {
+                    add(id, internName(name));
+                }
+            }
+        }
+        crawl();
+    }
+
+    /**
+     * Lists the directories which were added to the index but not listed yet.
+     */
+    private void crawl() {
+        while (!closed) {
+            Path directory;
+            int id;
+            synchronized (this) {
+                while (crawled < count && names[crawled] < 0) {
+                    crawled++;
+                }
+                if (crawled == count) {
+                    return;
+                }
+                id = crawled;
+                directory = pathOf(id);
+            }
+            List<Path> children;
+            try {
+                children = isFirstVisit(id, directory) ? lister.list(directory) : Collections.emptyList();
+            } catch (IOException e) {
+                children = Collections.emptyList();
+            }
+            synchronized (this) {
+                if (names[id] >= 0) {
+                    for (Path child : children) {
+                        add(id, internName(DirTreeUtils.getName(child)));
+                    }
+                }
+                crawled = Math.max(crawled, id + 1);
+            }
+        }
+    }
+
+    /**
+     * @return {@code false} if the directory has been crawled already by another path.
+     */
+    private boolean isFirstVisit(int id, Path directory) throws IOException {
+        Object key = Files.readAttributes(directory, BasicFileAttributes.class).fileKey();
+        if (key == null) {
+            return !Files.isSymbolicLink(directory);
+        }
+        synchronized (this) {
+            Integer crawledId = crawledKeys.get(key);
+            if (crawledId != null && crawledId != id && names[crawledId] >= 0) {
+                return false;
+            }
+            crawledKeys.put(key, id);
+            return true;
+        }
+    }
+
+    /**
+     * @return {@code true} if some directories added to the index are not crawled yet.
+     */
+    public synchronized boolean isIndexing() {
+        return crawled < count;
+    }
+
+    /**
+     * @return Number of the directories in the index.
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if (names[i] >= 0) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Finds directories whose names contain the query (ignoring case). The directories whose names start with the
+     * query come first, then the rest of the matching directories. Within these groups, the directories closer to
+     * the roots come first.
+     *
+     * @param query Part of the directory name.
+     * @param maxResults Max. number of the directories to return.
+     * @return Paths of the found directories.
+     */
+    public List<Path> find(String query, int maxResults) {
+        requireNonNull(query);
+        if (query.isEmpty() || maxResults <= 0) {
+            return Collections.emptyList();
+        }
+        String q = query.toLowerCase(Locale.ROOT);
+        synchronized (this) {
+            if (textSnapshot.length() != text.length()) {
+                textSnapshot = text.toString();
+            }
+            int nameCount = nameList.size();
+            BitSet matching = new BitSet(nameCount);
+            BitSet prefixes = new BitSet(nameCount);
+            if (lastQuery != null && lastNameCount == nameCount && q.contains(lastQuery)) {
+                // typed ahead: only the names which matched the previous query can match
+                for (int n = lastMatching.nextSetBit(0); n >= 0; n = lastMatching.nextSetBit(n + 1)) {
+                    match(n, q, matching, prefixes);
+                }
+            } else {
+                for (int i = textSnapshot.indexOf(q); i >= 0; ) {
+                    int nameId = Arrays.binarySearch(nameOffsets, 0, nameCount, i);
+                    if (nameId < 0) {
+                        nameId = -nameId - 2; // the match is inside the name
+                    } else {
+                        prefixes.set(nameId);
+                    }
+                    matching.set(nameId);
+                    if (nameId + 1 == nameCount) {
+                        break;
+                    }
+                    i = textSnapshot.indexOf(q, nameOffsets[nameId + 1]); // next name
+                }
+            }
+            lastQuery = q;
+            lastMatching = (BitSet) matching.clone();
+            lastNameCount = nameCount;
+            List<Path> result = new ArrayList<>();
+            if (!matching.isEmpty()) {
+                collect(prefixes, maxResults, result);
+                matching.andNot(prefixes);
+                collect(matching, maxResults, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Finds directories whose names contain the query and resolves their tree paths in the model (see
+     * {@link DirTreeModel#getTreePath(Path)}, i.e. this method should be invoked on the EDT once the model is
+     * displayed).
+     *
+     * @see #find(String, int)
+     */
+    public List<TreePath> findTreePaths(String query, int maxResults) {
+        List<TreePath> treePaths = new ArrayList<>();
+        for (Path path : find(query, maxResults)) {
+            model.getTreePath(path).ifPresent(treePaths::add);
+        }
+        return treePaths;
+    }
+
+    private void match(int nameId, String q, BitSet matching, BitSet prefixes) {
+        int start = nameOffsets[nameId];
+        int end = (nameId + 1 < nameList.size() ? nameOffsets[nameId + 1] : textSnapshot.length()) - 1;
+        for (int i = start; i <= end - q.length(); i++) {
+            if (textSnapshot.startsWith(q, i)) {
+                matching.set(nameId);
+                if (i == start) {
+                    prefixes.set(nameId);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds the directories with the specified names to the result, in the order of their IDs.
+     */
+    private void collect(BitSet nameIds, int maxResults, List<Path> result) {
+        int nameCount = nameIds.cardinality();
+        if (nameCount == 0 || result.size() >= maxResults) {
+            return;
+        }
+        if (nameCount > nameList.size() / 64) {
+            // frequent names: scan the directories until there are enough results
+            for (int id = 0; id < count && result.size() < maxResults; id++) {
+                int name = names[id];
+                if (name >= 0 && nameIds.get(name)) {
+                    result.add(pathOf(id));
+                }
+            }
+            return;
+        }
+        // rare names: only the directories with these names
+        int[] ids = new int[64];
+        int size = 0;
+        for (int name = nameIds.nextSetBit(0); name >= 0; name = nameIds.nextSetBit(name + 1)) {
+            for (int id = lastWithName[name]; id >= 0; id = previousWithName[id]) {
+                if (names[id] == name) { // not removed
+                    if (size == ids.length) {
+                        ids = Arrays.copyOf(ids, size * 2);
+                    }
+                    ids[size++] = id;
+                }
+            }
+        }
+        Arrays.sort(ids, 0, size);
+        for (int i = 0; i < size && result.size() < maxResults; i++) {
+            result.add(pathOf(ids[i]));
+        }
+    }
+
+    /**
+     * Stops the crawling.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Adds the directory without crawling it (e.g. to build a large synthetic index).
+     *
+     * @param parent ID of the parent directory.
+     * @return ID of the directory.
+     */
+    synchronized int addDirectory(int parent, String name) {
+        return add(parent, internName(name));
+    }
+
+    private int internName(String name) {
+        Integer id = nameIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        int nameId = nameList.size();
+        nameList.add(name);
+        nameIds.put(name, nameId);
+        if (nameId == nameOffsets.length) {
+            nameOffsets = Arrays.copyOf(nameOffsets, nameId * 2);
+            lastWithName = Arrays.copyOf(lastWithName, nameId * 2);
+        }
+        nameOffsets[nameId] = text.length();
+        lastWithName[nameId] = -1;
+        text.append(name.toLowerCase(Locale.ROOT)).append(SEPARATOR);
+        return nameId;
+    }
+
+    private int add(int parent, int name) {
+        if (count == names.length) {
+            int capacity = count * 2;
+            parents = Arrays.copyOf(parents, capacity);
+            names = Arrays.copyOf(names, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            previousWithName = Arrays.copyOf(previousWithName, capacity);
+        }
+        int id = count++;
+        parents[id] = parent;
+        names[id] = name;
+        firstChildren[id] = -1;
+        nextSiblings[id] = -1;
+        previousWithName[id] = lastWithName[name];
+        lastWithName[name] = id;
+        if (parent >= 0) {
+            nextSiblings[id] = firstChildren[parent];
+            firstChildren[parent] = id;
+        }
+        return id;
+    }
+
+    /**
+     * Removes the descendants of the removed directories. Relies on the descendants having greater IDs than their
+     * ancestors.
+     */
+    private void removeDescendants(int from) {
+        for (int id = from; id < count; id++) {
+            int parent = parents[id];
+            if (parent >= 0 && names[parent] < 0 && names[id] >= 0) {
+                names[id] = -1;
+            }
+        }
+    }
+
+    private Path pathOf(int id) {
+        int depth = 0;
+        int root = id;
+        while (parents[root] >= 0) {
+            root = parents[root];
+            depth++;
+        }
+        String[] elements = new String[depth];
+        for (int i = id; i != root; i = parents[i]) {
+            elements[--depth] = nameList.get(names[i]);
+        }
+        Path path = roots.get(root);
+        for (String element : elements) {
+            path = path.resolve(element);
+        }
+        return path;
+    }
+
+    /**
+     * @return ID of the directory or -1 if it is not in the index.
+     */
+    private int findId(Path directory) {
+        for (Map.Entry<Integer, Path> root : roots.entrySet()) {
+            Path rootPath = root.getValue();
+            if (directory.startsWith(rootPath) && names[root.getKey()] >= 0) {
+                int id = root.getKey();
+                for (Path element : rootPath.relativize(directory)) {
+                    if (element.toString().isEmpty()) {
+                        break; // directory is the root
+                    }
+                    Integer name = nameIds.get(element.toString());
+                    if (name == null) {
+                        return -1;
+                    }
+                    int child = firstChildren[id];
+                    while (child >= 0 && names[child] != name) {
+                        child = nextSiblings[child];
+                    }
+                    if (child < 0) {
+                        return -1;
+                    }
+                    id = child;
+                }
+                return id;
+            }
+        }
+        return -1;
+    }
+}
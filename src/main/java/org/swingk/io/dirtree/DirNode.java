@@ -2,6 +2,9 @@ package org.swingk.io.dirtree;
 
 import javax.swing.tree.TreeNode;
 import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Node of {@link DirTreeModel}.
@@ -12,7 +15,7 @@ public interface DirNode<T extends DirNode<T>> extends TreeNode {
 
     /**
      * @return The directory {@link Path} object if the node represents a filesystem directory or
-     * {@code null} for root or file system nodes.
+     * {@code null} for root, file system or placeholder nodes.
      */
     Path getDirectory();
 
@@ -23,4 +26,89 @@ public interface DirNode<T extends DirNode<T>> extends TreeNode {
      * Adds child to this node.
      */
     void add(T child);
+
+    /**
+     * Adds children to this node.
+     */
+    default void addAll(Collection<? extends T> children) {
+        children.forEach(this::add);
+    }
+
+    /**
+     * Inserts child to this node at the specified index. Required by the model to add new subdirectories to the
+     * populated nodes (see {@link DirTreeModel#refresh(DirNode)}, {@link DirTreeModel#setPageSize(int)}). By
+     * default throws {@link UnsupportedOperationException}, i.e. the nodes which don't override it can't be refreshed
+     * or paged.
+     */
+    default void insert(T child, int index) {
+        throw new UnsupportedOperationException("insert");
+    }
+
+    /**
+     * Removes child at the specified index from this node. Required by the model to update the populated nodes: to
+     * replace the loading placeholder in the asynchronous mode (see {@link DirTreeModel#setListingExecutor}), to
+     * unload the evicted directories (see {@link DirTreeModel#setEvictionLimits(int, int)}) and to remove deleted
+     * subdirectories on refresh or watching (see {@link DirTreeModel#refresh(DirNode)},
+     * {@link DirTreeModel#setWatching(boolean)}). By default throws {@link UnsupportedOperationException}, i.e. the
+     * nodes which don't override it can only be populated synchronously and never updated.
+     */
+    default void remove(int index) {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * Removes all children from this node.
+     */
+    default void removeAllChildren() {
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            remove(i);
+        }
+    }
+
+    /**
+     * Replaces all children of this node, e.g. when they are reordered or merged with new ones. The current children
+     * may be among the new ones. By default - removes all children and adds the new ones. Nodes which can be read
+     * concurrently with their modification (e.g. {@link ConcurrentDirNode}) replace the children at once.
+     *
+     * @param children New children. Must not be backed by this node (e.g. the view returned by
+     * {@link #getChildren()}).
+     */
+    default void replaceChildren(List<? extends T> children) {
+        removeAllChildren();
+        addAll(children);
+    }
+
+    /**
+     * @return Children of this node. By default - a view backed by the node. Nodes which can be read concurrently
+     * with their modification (e.g. {@link ConcurrentDirNode}) return an immutable snapshot.
+     */
+    default List<T> getChildren() {
+        return new AbstractList<>() {
+            @Override
+            public T get(int index) {
+                return getChildAt(index);
+            }
+
+            @Override
+            public int size() {
+                return getChildCount();
+            }
+        };
+    }
+
+    /**
+     * @return {@code true} if {@link #getIndex(TreeNode)} of this node takes constant time. Otherwise, the model finds
+     * the children of this node by binary search.
+     */
+    default boolean isIndexed() {
+        return false;
+    }
+
+    /**
+     * @return Kind of the placeholder node or {@code null} if this node is not a placeholder.
+     * @see DirNodeFactory#createPlaceholderNode(PlaceholderKind)
+     */
+    default PlaceholderKind getPlaceholderKind() {
+        return null;
+    }
 }
@@ -24,4 +24,19 @@ public interface DirNodeFactory<T extends DirNode<T>> {
      * @return New node that represents the filesystem directory.
      */
     T createDirectoryNode(Path directory, boolean filesystemRoot);
+
+    /**
+     * @param kind Kind of the placeholder.
+     * @return New placeholder node. The node must return the specified kind from
+     * {@link DirNode#getPlaceholderKind()}.
+     * @throws UnsupportedOperationException If the factory doesn't support placeholder nodes (default). Such factory
+     * cannot be used with asynchronous model, paging or listing deadline - the corresponding setters of the model
+     * throw {@link IllegalStateException}.
+     * @see DirTreeModel#setListingExecutor(java.util.concurrent.Executor)
+     * @see DirTreeModel#setPageSize(int)
+     * @see DirTreeModel#setListingTimeout(long)
+     */
+    default T createPlaceholderNode(PlaceholderKind kind) {
+        throw new UnsupportedOperationException("Placeholder nodes are not supported by " + getClass().getName());
+    }
 }
@@ -0,0 +1,54 @@
+package org.swingk.io.dirtree;
+
+/**
+ * Total size of a directory, including all its subdirectories. Immutable.
+ *
+ * @see DirSizeAggregator
+ */
+public final class DirSize {
+    private final long bytes;
+    private final long fileCount;
+    private final long directoryCount;
+    private final boolean complete;
+
+    DirSize(long bytes, long fileCount, long directoryCount, boolean complete) {
+        this.bytes = bytes;
+        this.fileCount = fileCount;
+        this.directoryCount = directoryCount;
+        this.complete = complete;
+    }
+
+    /**
+     * @return Total size of the files in bytes.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return Number of the files (including symbolic links and other non-directory entries).
+     */
+    public long getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * @return Number of the subdirectories (at any depth).
+     */
+    public long getDirectoryCount() {
+        return directoryCount;
+    }
+
+    /**
+     * @return {@code false} if the size is a partial result of the computation in progress.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public String toString() {
+        return "DirSize{bytes=" + bytes + ", files=" + fileCount + ", directories=" + directoryCount
+                + (complete ? "" : ", partial") + "}";
+    }
+}
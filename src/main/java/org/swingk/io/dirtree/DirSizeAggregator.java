@@ -0,0 +1,364 @@
+package org.swingk.io.dirtree;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Computes total size (bytes, number of files and subdirectories) of the directories of the model. The directory tree
+ * is walked in parallel on a {@link ForkJoinPool} (each subdirectory is a subtask). All entries are counted,
+ * regardless of the filter of the model.
+ * <ul>
+ * <li>The sizes of all the walked directories are cached, so the sizes of their subdirectories, and the subsequent
+ * computations of their ancestors, reuse them. Use {@link #invalidate(Path)} when a directory changes.</li>
+ * <li>While the size of a node is being computed, {@link #getSize(DirNode)} returns the partial size and the model
+ * fires {@code treeNodesChanged} events for the node (at most once per the progress interval), so that e.g. the tree
+ * cell renderer can display the progress.</li>
+ * <li>Symbolic links are not followed. Files with several hard links and directories reachable by several paths (e.g.
+ * bind mounts) are counted once, as identified by {@link BasicFileAttributes#fileKey()}.</li>
+ * </ul>
+ * Thread safe.
+ *
+ * @param <T> Type of the model nodes.
+ */
+public final class DirSizeAggregator<T extends DirNode<T>> implements Closeable {
+
+    private final DirTreeModel<T> model;
+    private final ForkJoinPool pool;
+    private final boolean ownPool;
+    private final Map<Path, Aggregate> cache = new ConcurrentHashMap<>();
+    private final Map<T, Computation> computations = new ConcurrentHashMap<>();
+    private final Timer progressTimer;
+
+    /**
+     * Creates aggregator with its own {@link ForkJoinPool}, which is shut down by {@link #close()}.
+     */
+    public DirSizeAggregator(DirTreeModel<T> model) {
+        this(model, new ForkJoinPool(), true);
+    }
+
+    /**
+     * @param pool Pool to walk the directories.
+     */
+    public DirSizeAggregator(DirTreeModel<T> model, ForkJoinPool pool) {
+        this(model, pool, false);
+    }
+
+    private DirSizeAggregator(DirTreeModel<T> model, ForkJoinPool pool, boolean ownPool) {
+        this.model = requireNonNull(model);
+        this.pool = requireNonNull(pool);
+        this.ownPool = ownPool;
+        this.progressTimer = new Timer(200, e -> reportProgress());
+    }
+
+    /**
+     * @param millis Min. interval between the progress events of a node. Default: 200 ms.
+     */
+    public void setProgressInterval(int millis) {
+        progressTimer.setDelay(millis);
+    }
+
+    /**
+     * @see #setProgressInterval(int)
+     */
+    public int getProgressInterval() {
+        return progressTimer.getDelay();
+    }
+
+    /**
+     * Starts computation of the size of the node (if it is not computed or being computed already). When the
+     * computation completes, {@code treeNodesChanged} event is fired for the node.
+     *
+     * @param node Directory node.
+     * @return Future of the complete size. Cancelled by {@link #cancel(DirNode)}.
+     */
+    public CompletableFuture<DirSize> compute(T node) {
+        Path dir = requireNonNull(node.getDirectory(), "Not a directory node");
+        Aggregate cached = cache.get(dir);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.toSize(true));
+        }
+        Computation computation = computations.computeIfAbsent(node, n -> new Computation(n, dir));
+        synchronized (computation) {
+            if (!computation.started) {
+                computation.started = true;
+                pool.execute(computation::run);
+                SwingUtilities.invokeLater(progressTimer::start);
+            }
+        }
+        return computation.future;
+    }
+
+    /**
+     * @return Size of the node: complete, partial (if it is being computed) or {@code null} if it is not computed.
+     */
+    public DirSize getSize(T node) {
+        Computation computation = computations.get(node);
+        if (computation != null) {
+            return computation.toSize();
+        }
+        Path dir = node.getDirectory();
+        Aggregate cached = dir != null ? cache.get(dir) : null;
+        return cached != null ? cached.toSize(true) : null;
+    }
+
+    /**
+     * Cancels the computation of the size of the node. The sizes of its subdirectories which are already computed
+     * remain cached.
+     */
+    public void cancel(T node) {
+        Computation computation = computations.remove(node);
+        if (computation != null) {
+            computation.cancelled = true;
+            computation.future.cancel(false);
+        }
+    }
+
+    /**
+     * Removes the cached sizes of the directory and its ancestors, e.g. when the directory has changed.
+     */
+    public void invalidate(Path directory) {
+        for (Path dir = directory; dir != null; dir = dir.getParent()) {
+            cache.remove(dir);
+        }
+    }
+
+    /**
+     * Cancels all the computations. Shuts down the pool if it was created by this aggregator.
+     */
+    @Override
+    public void close() {
+        new ArrayList<>(computations.keySet()).forEach(this::cancel);
+        SwingUtilities.invokeLater(progressTimer::stop);
+        if (ownPool) {
+            pool.shutdownNow();
+        }
+    }
+
+    private void reportProgress() {
+        if (computations.isEmpty()) {
+            progressTimer.stop();
+            return;
+        }
+        for (Computation computation : computations.values()) {
+            long progress = computation.entries.sum();
+            if (progress != computation.reported) {
+                computation.reported = progress;
+                model.nodeChanged(computation.node);
+            }
+        }
+    }
+
+    private void completed(Computation computation, Aggregate result) {
+        if (computation.cancelled) {
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            computations.remove(computation.node, computation);
+            model.nodeChanged(computation.node);
+            computation.future.complete(result.toSize(true));
+        });
+    }
+
+    private final class Computation {
+        final T node;
+        final Path dir;
+        final CompletableFuture<DirSize> future = new CompletableFuture<>();
+        final boolean unix;
+        final Set<Object> directoryKeys = ConcurrentHashMap.newKeySet();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder files = new LongAdder();
+        final LongAdder directories = new LongAdder();
+        final LongAdder entries = new LongAdder();
+        boolean started; // guarded by this
+        volatile boolean cancelled;
+        long reported; // EDT
+
+        Computation(T node, Path dir) {
+            this.node = node;
+            this.dir = dir;
+            this.unix = dir.getFileSystem().supportedFileAttributeViews().contains("unix");
+        }
+
+        void run() {
+            try {
+                Object key;
+                try {
+                    key = Files.readAttributes(dir, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).fileKey();
+                } catch (IOException e) {
+                    key = null;
+                }
+                Aggregate result = new SizeTask(this, dir, key).invoke();
+                if (result != null) {
+                    completed(this, result);
+                }
+            } catch (CancellationException e) {
+                // cancelled
+            } catch (RuntimeException e) {
+                computations.remove(node, this);
+                future.completeExceptionally(e);
+            }
+        }
+
+        void progress(Aggregate aggregate) {
+            bytes.add(aggregate.bytes);
+            files.add(aggregate.files);
+            directories.add(aggregate.directories);
+            entries.add(aggregate.files + aggregate.directories);
+        }
+
+        DirSize toSize() {
+            return new DirSize(bytes.sum(), files.sum(), directories.sum(), false);
+        }
+    }
+
+    /**
+     * Size of a directory. Keeps the files with several hard links, so that they are counted once in its ancestors.
+     */
+    private static final class Aggregate {
+        long bytes;
+        long files;
+        long directories;
+        Map<Object, Long> linked; // file key -> size
+
+        void addLinked(Object key, long size) {
+            if (linked == null) {
+                linked = new HashMap<>();
+            }
+            if (linked.putIfAbsent(key, size) != null) {
+                bytes -= size;
+                files--;
+            }
+        }
+
+        void add(Aggregate child) {
+            bytes += child.bytes;
+            files += child.files;
+            directories += child.directories;
+            if (child.linked != null) {
+                child.linked.forEach(this::addLinked);
+            }
+        }
+
+        DirSize toSize(boolean complete) {
+            return new DirSize(bytes, files, directories, complete);
+        }
+    }
+
+    /**
+     * Result of a directory which has been counted already by another path.
+     */
+    private static final Aggregate DUPLICATE = new Aggregate();
+
+    private final class SizeTask extends RecursiveTask<Aggregate> {
+        private final Computation computation;
+        private final Path dir;
+        private final Object key;
+
+        SizeTask(Computation computation, Path dir, Object key) {
+            this.computation = computation;
+            this.dir = dir;
+            this.key = key;
+        }
+
+        /**
+         * @return Size of the directory, {@link #DUPLICATE} if it has been counted already or {@code null} if the
+         * computation was cancelled.
+         */
+        @Override
+        protected Aggregate compute() {
+            Aggregate cached = cache.get(dir);
+            if (cached != null) {
+                computation.progress(cached);
+                return cached;
+            }
+            if (computation.cancelled || (key != null && !computation.directoryKeys.add(key))) {
+                return computation.cancelled ? null : DUPLICATE;
+            }
+            Aggregate aggregate = new Aggregate();
+            List<SizeTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path entry : stream) {
+                    if (computation.cancelled) {
+                        return null;
+                    }
+                    visit(entry, aggregate, subtasks);
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                // not accessible - count what has been listed
+            }
+            invokeAll(subtasks);
+            for (SizeTask subtask : subtasks) {
+                Aggregate child = subtask.join();
+                if (child == null) {
+                    return null;
+                }
+                if (child != DUPLICATE) {
+                    aggregate.directories++;
+                    computation.directories.increment();
+                    aggregate.add(child);
+                }
+            }
+            cache.put(dir, aggregate);
+            return aggregate;
+        }
+
+        private void visit(Path entry, Aggregate aggregate, List<SizeTask> subtasks) {
+            boolean directory;
+            long size;
+            Object fileKey;
+            int links;
+            try {
+                if (computation.unix) {
+                    Map<String, Object> attrs = Files.readAttributes(entry, "unix:isDirectory,size,fileKey,nlink",
+                            LinkOption.NOFOLLOW_LINKS);
+                    directory = (Boolean) attrs.get("isDirectory");
+                    size = (Long) attrs.get("size");
+                    fileKey = attrs.get("fileKey");
+                    links = (Integer) attrs.get("nlink");
+                } else {
+                    BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    directory = attrs.isDirectory();
+                    size = attrs.size();
+                    fileKey = attrs.fileKey();
+                    links = fileKey != null ? 2 : 1; // no link count, dedupe all the files with keys
+                }
+            } catch (IOException | RuntimeException e) {
+                return; // deleted or not accessible
+            }
+            if (directory) {
+                subtasks.add(new SizeTask(computation, entry, fileKey));
+            } else {
+                aggregate.files++;
+                aggregate.bytes += size;
+                if (links > 1 && fileKey != null) {
+                    aggregate.addLinked(fileKey, size);
+                }
+                computation.files.increment();
+                computation.bytes.add(size);
+            }
+            computation.entries.increment();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.swingk.io.dirtree;
+
+import java.nio.file.Path;
+
+/**
+ * Receives measurements of the filesystem access by {@link DirTreeModel}, e.g. to bridge them to the monitoring
+ * system of the application as counters and histograms. The methods are invoked on the thread which accessed the
+ * filesystem and should return quickly. The current number of nodes is available via
+ * {@link DirTreeModel#getNodeCount()}.
+ * <p>
+ * The same information is also recorded as JDK Flight Recorder events (category 'Directory Tree') when
+ * {@code jdk.jfr} module is in the boot layer. It is there by default for the applications on the class path; a modular
+ * application which doesn't require {@code jdk.jfr} itself must add it with {@code --add-modules jdk.jfr}.
+ *
+ * @see DirTreeModel#setMetrics(DirTreeMetrics)
+ */
+public interface DirTreeMetrics {
+    /**
+     * No-op metrics. The model doesn't take any measurements for them.
+     */
+    DirTreeMetrics NONE = new DirTreeMetrics() {
+    };
+
+    /**
+     * Directory was listed.
+     *
+     * @param directory Listed directory.
+     * @param entries Number of the directory entries (files and directories).
+     * @param accepted Number of the subdirectories accepted by the model filter.
+     * @param attributeReads Number of file attribute reads required by the filter.
+     * @param nanos Duration of the listing.
+     */
+    default void directoryListed(Path directory, int entries, int accepted, int attributeReads, long nanos) {
+    }
+
+    /**
+     * Listing of the directory has failed (the directory is displayed without subdirectories).
+     *
+     * @param nanos Duration of the listing.
+     */
+    default void directoryListingFailed(Path directory, long nanos) {
+    }
+
+    /**
+     * Listing of the directory was served from {@link ListingSnapshot}.
+     */
+    default void snapshotHit(Path directory) {
+    }
+
+    /**
+     * Leaf status of the directory was determined by {@link LeafProbe}.
+     *
+     * @param nanos Duration of the probe.
+     */
+    default void leafProbed(Path directory, boolean leaf, long nanos) {
+    }
+}
@@ -1,41 +1,102 @@
 package org.swingk.io.dirtree;
 
+import javax.swing.SwingUtilities;
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
 import javax.swing.event.TreeModelListener;
 import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreePath;
 import java.io.IOException;
-import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 import static java.util.Objects.requireNonNull;
-import static org.swingk.io.dirtree.DirTreeUtils.NAME_COMPARATOR;
+import static org.swingk.io.dirtree.DirTreeUtils.NAME_ORDER;
 
 /**
  * Tree model with a hierarchy of directories in the local filesystem.
  *
  * @param <T> Type of nodes in this model.
- * @implNote The model populates itself incrementally, as the user expands the tree nodes.
+ * @implNote The model populates itself incrementally, as the user expands the tree nodes. By default, the directories
+ * are listed on the thread which queries the model. In asynchronous mode (see {@link #setListingExecutor(Executor)})
+ * the listing is performed in background and the results are published on the EDT.
  * @see DirNodeFactory
  */
 public class DirTreeModel<T extends DirNode<T>> implements TreeModel {
+    /**
+     * Max. age of a prefetched listing.
+     *
+     * @see #setPrefetch(int, int)
+     */
+    public static final long PREFETCH_MAX_AGE_MILLIS = 60_000;
 
     private final DirNodeFactory<T> nodeFactory;
     private final T root;
-    private final DirectoryStream.Filter<Path> filter;
+    private final DirHierarchy hierarchy;
+    private final boolean sharedHierarchy;
+    private final List<FileSystem> fileSystems;
     private final Comparator<Path> pathComparator;
     private final Map<T, Boolean> leafStatus = new ConcurrentHashMap<>();
     private final Set<T> populated = ConcurrentHashMap.newKeySet();
+    private final Map<T, CompletableFuture<List<Path>>> loading = new ConcurrentHashMap<>();
+    private final Set<T> probing = ConcurrentHashMap.newKeySet();
+    private final Set<T> loadingPages = ConcurrentHashMap.newKeySet();
+    private final EventListenerList listenerList = new EventListenerList();
+    private volatile Executor listingExecutor;
+    private volatile DirNameIndex nameIndex;
+    private volatile DirAttributeCache<T> attributeCache;
+    private volatile long listingTimeout;
+    private volatile int maxListingsPerStore;
+    private final Map<Object, Semaphore> storeBulkheads = new ConcurrentHashMap<>(); // by device or root
+    private volatile ExecutorService deadlineExecutor; // lists within the deadline in synchronous mode
+    private volatile int pageSize;
+    private volatile int batchInterval;
+    private final Set<T> expanded = ConcurrentHashMap.newKeySet();
+    private final Map<Path, T> watchedNodes = new ConcurrentHashMap<>();
+    private volatile DirWatcher watcher;
+    private final Map<T, Boolean> lru = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true));
+    private final AtomicInteger nodeCount = new AtomicInteger();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+    private volatile int maxPopulatedDirectories;
+    private volatile int maxNodeCount;
+    private final Map<T, Prefetched> prefetched = new ConcurrentHashMap<>();
+    private final Set<T> prefetchQueue = ConcurrentHashMap.newKeySet();
+    private final AtomicLong prefetchCount = new AtomicLong();
+    private final AtomicLong prefetchHitCount = new AtomicLong();
+    private volatile ThreadPoolExecutor prefetchExecutor;
+    private volatile int maxPrefetchPerDirectory;
 
     /**
      * Constructor.
@@ -43,45 +104,118 @@ public class DirTreeModel<T extends DirNode<T>> implements TreeModel {
      * @see #DirTreeModel(Comparator, boolean, boolean, DirNodeFactory)
      */
     public DirTreeModel(DirNodeFactory<T> nodeFactory) {
-        this(NAME_COMPARATOR, false, false, nodeFactory);
+        this(NAME_ORDER, false, false, nodeFactory);
     }
 
     /**
      * Constructor.
      *
      * @param pathComparator The model nodes will be ordered according to the comparator.
-     * See {@link DirTreeUtils#NAME_COMPARATOR}.
+     * See {@link DirTreeUtils#NAME_COMPARATOR}. {@link SortKeyComparator} (e.g. {@link DirTreeUtils#NAME_ORDER})
+     * is more efficient for large directories.
      * @param showHidden Show hidden directories.
      * @param showSystem Show system directories (ignored for POSIX filesystem).
      * @param nodeFactory Factory to create nodes of the model.
      */
     public DirTreeModel(Comparator<Path> pathComparator, boolean showHidden, boolean showSystem,
                         DirNodeFactory<T> nodeFactory) {
+        this(pathComparator, showHidden, showSystem, DirEntryFilter.ACCEPT_ALL, nodeFactory);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param entryFilter Additional filter of the directories. Its name stage is evaluated before any attributes of
+     * the directory entries are read, e.g. {@code DirEntryFilter.excludeNames("node_modules", ".git")}.
+     * @see #DirTreeModel(Comparator, boolean, boolean, DirNodeFactory)
+     */
+    public DirTreeModel(Comparator<Path> pathComparator, boolean showHidden, boolean showSystem,
+                        DirEntryFilter entryFilter, DirNodeFactory<T> nodeFactory) {
+        this(List.of(FileSystems.getDefault()), pathComparator, showHidden, showSystem, entryFilter, nodeFactory);
+    }
+
+    /**
+     * Constructor of the model which shows the directories of the specified filesystems, e.g. the contents of a ZIP
+     * or JAR file (see {@link FileSystems#newFileSystem(Path, ClassLoader)}) without extracting it. Each filesystem
+     * is represented by a filesystem node (see {@link DirNodeFactory#createFileSystemNode(FileSystem)}) under the
+     * root node. Filesystems which support neither POSIX nor DOS file attributes are filtered by the basic
+     * attributes (hidden directories are recognized by their names).
+     *
+     * @param fileSystems Filesystems to show, in the order of their nodes. The model doesn't close them.
+     * @see #DirTreeModel(Comparator, boolean, boolean, DirEntryFilter, DirNodeFactory)
+     */
+    public DirTreeModel(List<FileSystem> fileSystems, Comparator<Path> pathComparator, boolean showHidden,
+                        boolean showSystem, DirEntryFilter entryFilter, DirNodeFactory<T> nodeFactory) {
+        // the nodes of the model are the cache of the listings
+        this(new DirHierarchy(fileSystems, pathComparator, showHidden, showSystem, entryFilter, 0), false,
+                nodeFactory);
+    }
+
+    /**
+     * Constructor of the model which shares the hierarchy (its filter, order, cache of listings and settings, e.g.
+     * {@link #setLeafProbe(LeafProbe)}) with other models, e.g. of several file choosers of the application. A
+     * directory is listed once for all the models, and its cached listing is kept while any of the models has it
+     * populated. {@link #refresh(DirNode)} lists the directory again for all the models, but the other models update
+     * their nodes only when they are refreshed themselves.
+     *
+     * @param hierarchy Hierarchy shared by the models.
+     * @see DirHierarchy#setMaxCachedDirectories(int)
+     */
+    public DirTreeModel(DirHierarchy hierarchy, DirNodeFactory<T> nodeFactory) {
+        this(hierarchy, true, nodeFactory);
+    }
+
+    private DirTreeModel(DirHierarchy hierarchy, boolean sharedHierarchy, DirNodeFactory<T> nodeFactory) {
+        this.hierarchy = requireNonNull(hierarchy);
+        this.sharedHierarchy = sharedHierarchy;
         this.nodeFactory = requireNonNull(nodeFactory);
-        this.pathComparator = requireNonNull(pathComparator);
+        this.pathComparator = hierarchy.getComparator();
         this.root = nodeFactory.createRootNode();
-        FileSystem fs = FileSystems.getDefault();
-        this.filter = new DirFilter(fs, showHidden, showSystem);
-        var fsNode = nodeFactory.createFileSystemNode(fs);
-        root.add(fsNode);
-        var rootDirs = new ArrayList<Path>();
-        fs.getRootDirectories().forEach(rootDirs::add);
-        assert !rootDirs.isEmpty();
-        rootDirs.sort(pathComparator);
-        rootDirs.forEach(rootDir -> fsNode.add(nodeFactory.createDirectoryNode(rootDir, true)));
+        this.fileSystems = hierarchy.getFileSystems();
         leafStatus.put(root, Boolean.FALSE);
         populated.add(root);
-        leafStatus.put(fsNode, rootDirs.isEmpty());
-        populated.add(fsNode);
+        for (FileSystem fs : this.fileSystems) {
+            var fsNode = nodeFactory.createFileSystemNode(fs);
+            root.add(fsNode);
+            List<Path> rootDirs = hierarchy.getRootDirectories(fs);
+            rootDirs.forEach(rootDir -> fsNode.add(newDirectoryNode(rootDir, true)));
+            leafStatus.put(fsNode, rootDirs.isEmpty());
+            populated.add(fsNode);
+        }
     }
 
     /**
-     * @return Filesystem node. Created via to call to {@link DirNodeFactory#createFileSystemNode(FileSystem)}.
+     * @return Node of the first filesystem of the model. Created via to call to
+     * {@link DirNodeFactory#createFileSystemNode(FileSystem)}.
      */
     public T getFileSystemNode() {
         return root.getChildAt(0);
     }
 
+    /**
+     * @return Node of the filesystem or {@code null} if the filesystem is not in the model.
+     */
+    public T getFileSystemNode(FileSystem fs) {
+        int index = fileSystems.indexOf(fs);
+        return index >= 0 ? root.getChildAt(index) : null;
+    }
+
+    /**
+     * @return Filesystems of the model, in the order of their nodes.
+     */
+    public List<FileSystem> getFileSystems() {
+        return fileSystems;
+    }
+
+    /**
+     * @return Headless hierarchy of directories which lists, filters and sorts the directories of this model. Unless
+     * the hierarchy is shared (see {@link #DirTreeModel(DirHierarchy, DirNodeFactory)}), its cache is disabled - the
+     * populated nodes of the model serve as the cache.
+     */
+    public DirHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
     /**
      * @see #getFileSystemNode()
      */
@@ -89,146 +223,1852 @@ public class DirTreeModel<T extends DirNode<T>> implements TreeModel {
         return new TreePath(new Object[]{root, root.getChildAt(0)});
     }
 
-    private static List<Path> getAllParents(Path directory) {
-        List<Path> parents = new ArrayList<>();
-        Path parent = directory;
-        while (parent != null) {
-            parents.add(parent);
-            parent = parent.getParent();
+    /**
+     * Switches the model to asynchronous mode: directories are listed on the specified executor, while the expanded
+     * node temporarily shows a single placeholder child (see {@link PlaceholderKind#LOADING}). When the listing is
+     * complete, the placeholder is replaced with the directory nodes on the EDT and the corresponding
+     * {@link TreeModelListener} events are fired. Leaf status of the directories is also determined in background.
+     * <p>
+     * Note that {@link #getTreePath(Path)} always lists the required directories synchronously. Use
+     * {@link #prepopulate(Collection, int)} to list many directories in background.
+     *
+     * @param executor Executor to list directories. E.g. {@link DirTreeUtils#newListingExecutor()}. {@code null}
+     * switches the model back to synchronous mode.
+     * @throws IllegalStateException If the node factory doesn't support placeholder nodes.
+     * @see DirNodeFactory#createPlaceholderNode(PlaceholderKind)
+     */
+    public void setListingExecutor(Executor executor) {
+        if (executor != null) {
+            requirePlaceholders(PlaceholderKind.LOADING);
         }
-        Collections.reverse(parents); // so the root is first
-        return parents;
+        this.listingExecutor = executor;
     }
 
     /**
-     * @param directory Local filesystem directory. Must be absolute as specified by {@link Path#isAbsolute()}.
-     * @return {@link Optional} with the tree path of the specified directory or empty {@link Optional} if the
-     * directory is not in the model (e.g. doesn't exist, doesn't pass the filter, etc.).
-     * @implNote A side-effect of this method invocation is that the model populates itself with the nodes required by
-     * the {@link TreePath}. It can be used to build and prepopulate the model on any thread before passing it to
-     * the EDT.
+     * @return Executor to list directories in background or {@code null} if the model is synchronous.
+     * @see #setListingExecutor(Executor)
      */
-    public Optional<TreePath> getTreePath(Path directory) {
-        requireNonNull(directory);
-        if (!directory.isAbsolute()) {
-            throw new IllegalArgumentException("The directory path must be absolute.");
+    public Executor getListingExecutor() {
+        return listingExecutor;
+    }
+
+    /**
+     * @return {@code true} if the model lists directories in background.
+     * @see #setListingExecutor(Executor)
+     */
+    public boolean isAsynchronous() {
+        return listingExecutor != null;
+    }
+
+    /**
+     * Sets strategy to determine leaf status of directories which are not listed yet (i.e. whether to display the
+     * expand handle). If the probe is wrong, the leaf status is corrected once the directory is listed.
+     *
+     * @param leafProbe Probe. Default is {@link LeafProbe#exact()}.
+     */
+    public void setLeafProbe(LeafProbe leafProbe) {
+        hierarchy.setLeafProbe(leafProbe);
+    }
+
+    /**
+     * @see #setLeafProbe(LeafProbe)
+     */
+    public LeafProbe getLeafProbe() {
+        return hierarchy.getLeafProbe();
+    }
+
+    /**
+     * Sets persistent cache of directory listings. Directories found in the snapshot with unchanged last modified time
+     * are not listed again and their subdirectories get the leaf status stored in the snapshot. New listings and leaf
+     * statuses are recorded in the snapshot. Note that the last modified time of a directory doesn't reflect changes
+     * of attributes (e.g. hidden flag) of its subdirectories. The snapshot is used only for the directories of the
+     * filesystem of its file, and only for the listings written with the same filter (see {@link ListingSnapshot}).
+     *
+     * @param snapshot Snapshot or {@code null} to list all directories. The application is responsible for saving
+     * the snapshot (see {@link ListingSnapshot#save()}).
+     */
+    public void setListingSnapshot(ListingSnapshot snapshot) {
+        hierarchy.setListingSnapshot(snapshot);
+    }
+
+    /**
+     * @return Persistent cache of directory listings or {@code null}.
+     * @see #setListingSnapshot(ListingSnapshot)
+     */
+    public ListingSnapshot getListingSnapshot() {
+        return hierarchy.getListingSnapshot();
+    }
+
+    /**
+     * Enables paging of the directory children: a directory node initially shows only the first {@code pageSize}
+     * subdirectories (in the order of the model comparator) followed by a {@link PlaceholderKind#MORE} placeholder,
+     * which loads the next page when expanded (see {@link #loadNextPage(DirNode)}). The page is selected without
+     * sorting the whole directory, so the time to show the first page and the memory used by the model don't depend
+     * on the size of the directory. Subdirectories which compare as equal are ordered by their paths.
+     * <p>
+     * Applies to the directories populated after the invocation. Listings of pages are not stored in
+     * {@link ListingSnapshot}, although they can be served from it.
+     *
+     * @param pageSize Max. number of subdirectories per page. 0 - no paging (default).
+     * @throws IllegalStateException If the node factory doesn't support placeholder nodes.
+     * @see DirNodeFactory#createPlaceholderNode(PlaceholderKind)
+     */
+    public void setPageSize(int pageSize) {
+        if (pageSize < 0) {
+            throw new IllegalArgumentException("Negative page size");
         }
-        try {
-            if (!filter.accept(directory)) {
-                return Optional.empty();
-            }
-        } catch (IOException e) {
-            return Optional.empty();
+        if (pageSize > 0) {
+            requirePlaceholders(PlaceholderKind.MORE);
         }
-        final List<Path> parents = getAllParents(directory);
-        final int size = parents.size();
-        List<T> treePathNodes = new ArrayList<>(size + 2);
-        treePathNodes.add(getRoot());
-        treePathNodes.add(getFileSystemNode());
-        T currentNode = getFileSystemNode();  // start with filesystem node
-        for (int i = 0; i < size; i++) {
-            T node = null;
-            for (int j = 0; j < currentNode.getChildCount(); j++) {
-                T childNode = currentNode.getChildAt(j);
-                if (childNode.getDirectory().equals(parents.get(i))) {
-                    node = childNode;
-                    break;
-                }
-            }
-            if (node == null) {
-                return Optional.empty();
-            }
-            treePathNodes.add(node);
-            if (i == (size - 1)) {
-                return Optional.of(new TreePath(treePathNodes.toArray()));
-            }
-            ensurePopulated(node);
-            currentNode = node;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @see #setPageSize(int)
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Enables streaming population in asynchronous mode: the subdirectories are inserted into the expanded node (in
+     * their sorted positions, before the {@link PlaceholderKind#LOADING} placeholder) in batches while the directory
+     * is being listed, so that the first subdirectories of a large or slow directory are shown without waiting for
+     * the whole listing. A batch is published at most once per interval. Not used when paging is enabled (see
+     * {@link #setPageSize(int)}) or with {@link ListingSnapshot}.
+     *
+     * @param millis Min. interval between the batches in milliseconds. 0 - no streaming (default).
+     * @see #setListingExecutor(Executor)
+     */
+    public void setBatchInterval(int millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Negative interval");
         }
-        return Optional.empty();
+        this.batchInterval = millis;
     }
 
     /**
-     * @return Model root node. Created via to call to {@link DirNodeFactory#createRootNode()}.
+     * @see #setBatchInterval(int)
      */
-    @Override
-    public T getRoot() {
-        return root;
+    public int getBatchInterval() {
+        return batchInterval;
     }
 
-    @Override
-    public T getChild(Object parent, int index) {
-        T dirNode = (T) parent;
-        ensurePopulated(dirNode);
-        return dirNode.getChildAt(index);
+    /**
+     * Replaces the {@link PlaceholderKind#MORE} placeholder of the node with the next page of its subdirectories
+     * (followed by a new placeholder if there are more subdirectories). In asynchronous mode, the page is listed in
+     * background. Does nothing if the node has no placeholder. Should be invoked on the EDT.
+     *
+     * @see #setPageSize(int)
+     */
+    public void loadNextPage(T node) {
+        T more = getMorePlaceholder(node);
+        if (more == null || !loadingPages.add(node)) {
+            return;
+        }
+        Path dir = node.getDirectory();
+        Path after = node.getChildAt(node.getChildCount() - 2).getDirectory();
+        int limit = pageLimit();
+        Executor executor = listingExecutor;
+        if (executor == null) {
+            appendPage(node, more, listChildren(dir, after, limit), limit);
+        } else {
+            CompletableFuture.supplyAsync(() -> listChildren(dir, after, limit), executor)
+                    .handle((children, ex) -> ex == null ? children : Collections.<Path>emptyList())
+                    .thenAcceptAsync(children -> appendPage(node, more, children, limit), SwingUtilities::invokeLater);
+        }
+    }
+
+    /**
+     * @return Max. number of children to list for a page - the page size and one more child to detect the next page.
+     */
+    private int pageLimit() {
+        int size = pageSize;
+        return size > 0 ? size + 1 : Integer.MAX_VALUE;
     }
 
-    private DirectoryStream<Path> newDirectoryStream(Path dir) throws IOException {
-        return Files.newDirectoryStream(dir, filter);
+    /**
+     * @return {@link PlaceholderKind#MORE} placeholder of the node or {@code null}.
+     */
+    private T getMorePlaceholder(T node) {
+        int count = node.getChildCount();
+        T last = count > 1 ? node.getChildAt(count - 1) : null;
+        return last != null && last.getPlaceholderKind() == PlaceholderKind.MORE ? last : null;
     }
 
-    private void ensurePopulated(T node) {
-        if (!populated.contains(node)) {
-            Path dir = node.getDirectory();
-            List<Path> children;
-            try (DirectoryStream<Path> dirStream = newDirectoryStream(dir)) {
-                children = new ArrayList<>();
-                dirStream.forEach(children::add);
-                children.sort(pathComparator);
+    /**
+     * Inserts the page of children before the {@link PlaceholderKind#MORE} placeholder of the node, and removes the
+     * placeholder if there are no more children.
+     *
+     * @param children Listing of the page. Contains one more child if there is a next page.
+     */
+    private void appendPage(T node, T more, List<Path> children, int limit) {
+        loadingPages.remove(node);
+        if (getMorePlaceholder(node) != more || !isAttached(node)) {
+            return; // the node has changed in the meantime
+        }
+        boolean hasMore = limit != Integer.MAX_VALUE && children.size() >= limit;
+        insertPage(node, hasMore ? children.subList(0, limit - 1) : children, hasMore);
+    }
+
+    private void insertPage(T node, List<Path> children, boolean hasMore) {
+        TreePath path = pathOf(node);
+        int index = node.getChildCount() - 1; // index of the placeholder
+        List<T> insertedNodes = new ArrayList<>(children.size());
+        for (Path dir : children) {
+            T child = newChildNode(dir);
+            node.insert(child, index + insertedNodes.size());
+            insertedNodes.add(child);
+        }
+        if (!insertedNodes.isEmpty()) {
+            int[] indices = new int[insertedNodes.size()];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = index + i;
+            }
+            fireTreeNodesInserted(path, indices, insertedNodes.toArray());
+        }
+        if (!hasMore) {
+            int moreIndex = node.getChildCount() - 1;
+            T more = node.getChildAt(moreIndex);
+            node.remove(moreIndex);
+            fireTreeNodesRemoved(path, new int[]{moreIndex}, new Object[]{more});
+        }
+    }
+
+    /**
+     * Loads the pages of the node up to the specified subdirectory (synchronously, within the deadline).
+     *
+     * @return Index of the subdirectory node or -1 if the directory doesn't have such subdirectory or the listing has
+     * failed or timed out.
+     */
+    private int loadPagesThrough(T node, Path child) {
+        T more = getMorePlaceholder(node);
+        if (more == null || loadingPages.contains(node)) {
+            return -1;
+        }
+        Path dir = node.getDirectory();
+        Path after = node.getChildAt(node.getChildCount() - 2).getDirectory();
+        Supplier<PageCollector<?>> listing = () -> {
+            PageCollector<?> page = PageCollector.create(pathComparator, after, child, Integer.MAX_VALUE);
+            try {
+                hierarchy.list(dir, page);
             } catch (IOException e) {
-                children = Collections.emptyList();
+                return null;
             }
-            leafStatus.put(node, children.isEmpty());
-            children.forEach(childPath -> node.add(nodeFactory.createDirectoryNode(childPath, false)));
-            populated.add(node);
+            return page;
+        };
+        PageCollector<?> page = isGuarded() ? guarded(dir, listing) : listing.get();
+        if (page == null || getMorePlaceholder(node) != more) {
+            return -1;
         }
+        insertPage(node, page.getPaths(), page.hasMore());
+        return indexOfChild(node, child);
     }
 
-    @Override
-    public int getChildCount(Object parent) {
-        T dirNode = (T) parent;
-        if (Boolean.TRUE.equals(leafStatus.get(dirNode))) {
-            return 0;
+    /**
+     * Sets receiver of the measurements of the filesystem access (listings and leaf probes).
+     *
+     * @param metrics Metrics. {@link DirTreeMetrics#NONE} (default) disables the measurements.
+     */
+    public void setMetrics(DirTreeMetrics metrics) {
+        hierarchy.setMetrics(metrics);
+    }
+
+    /**
+     * @see #setMetrics(DirTreeMetrics)
+     */
+    public DirTreeMetrics getMetrics() {
+        return hierarchy.getMetrics();
+    }
+
+    /**
+     * Sets name index to be updated with the directory listings done by the model.
+     *
+     * @param index Index created for this model or {@code null}.
+     * @see DirNameIndex#DirNameIndex(DirTreeModel)
+     */
+    public void setNameIndex(DirNameIndex index) {
+        this.nameIndex = index;
+    }
+
+    /**
+     * @see #setNameIndex(DirNameIndex)
+     */
+    public DirNameIndex getNameIndex() {
+        return nameIndex;
+    }
+
+    /**
+     * Sets attribute cache to be filled with the attributes of the subdirectories which the model reads anyway while
+     * listing the directories. A hierarchy shared by several models (see
+     * {@link #DirTreeModel(DirHierarchy, DirNodeFactory)}) feeds only the cache of the model where it was set last.
+     *
+     * @param cache Cache created for this model or {@code null}.
+     * @see DirAttributeCache#DirAttributeCache(DirTreeModel)
+     */
+    public void setAttributeCache(DirAttributeCache<T> cache) {
+        this.attributeCache = cache;
+        hierarchy.setAttributeSink(cache != null ? cache::listed : null);
+    }
+
+    /**
+     * @see #setAttributeCache(DirAttributeCache)
+     */
+    public DirAttributeCache<T> getAttributeCache() {
+        return attributeCache;
+    }
+
+    /**
+     * Sets deadline of directory listings, so that a hung filesystem (e.g. a dead network mount) can't block the
+     * model. A listing which exceeds the deadline is abandoned (its thread is left to finish or hang on its own) and
+     * the node shows a {@link PlaceholderKind#TIMED_OUT} placeholder - expanding it lists the directory again. A
+     * leaf probe which exceeds the deadline makes the node expandable. In synchronous mode, the listings are done on a
+     * helper executor, while the calling thread waits for them until the deadline. The helper executor is shut down
+     * when neither the deadline nor the store limit is set.
+     *
+     * @param millis Deadline in milliseconds. 0 - no deadline (default).
+     * @throws IllegalStateException If the node factory doesn't support placeholder nodes.
+     * @see #setMaxListingsPerStore(int)
+     * @see DirNodeFactory#createPlaceholderNode(PlaceholderKind)
+     */
+    public void setListingTimeout(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Negative timeout");
         }
-        ensurePopulated(dirNode);
-        return dirNode.getChildCount();
+        if (millis > 0) {
+            requirePlaceholders(PlaceholderKind.TIMED_OUT);
+        }
+        this.listingTimeout = millis;
+        shutdownDeadlineExecutorIfUnguarded();
     }
 
-    private boolean computeLeafStatus(T node) {
-        boolean leaf;
-        try (DirectoryStream<Path> dirStream = newDirectoryStream(node.getDirectory())) {
-            leaf = !dirStream.iterator().hasNext();
+    /**
+     * @see #setListingTimeout(long)
+     */
+    public long getListingTimeout() {
+        return listingTimeout;
+    }
+
+    /**
+     * Limits the number of concurrent listings and leaf probes per filesystem store, so that a slow or hung store
+     * can't occupy all the listing threads, while directories of the other stores are listed at full speed. The store
+     * is identified by the device of the directory where the filesystem reports it (the {@code unix:dev} attribute),
+     * otherwise by the root of the directory. A listing which waits for the limit longer than the deadline (see
+     * {@link #setListingTimeout(long)}) times out. Without the deadline, a listing on the calling thread in
+     * synchronous mode doesn't wait for the limit at all - it times out at once, so the EDT is never blocked.
+     *
+     * @param max Max. number of concurrent listings per store. 0 - no limit (default).
+     * @throws IllegalStateException If the node factory doesn't support placeholder nodes.
+     * @see DirNodeFactory#createPlaceholderNode(PlaceholderKind)
+     */
+    public void setMaxListingsPerStore(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("Negative limit");
+        }
+        if (max > 0) {
+            requirePlaceholders(PlaceholderKind.TIMED_OUT);
+        }
+        this.maxListingsPerStore = max;
+        storeBulkheads.clear();
+        shutdownDeadlineExecutorIfUnguarded();
+    }
+
+    /**
+     * @see #setMaxListingsPerStore(int)
+     */
+    public int getMaxListingsPerStore() {
+        return maxListingsPerStore;
+    }
+
+    /**
+     * Fails fast if a feature requires placeholder nodes, which the node factory doesn't support.
+     */
+    private void requirePlaceholders(PlaceholderKind kind) {
+        try {
+            nodeFactory.createPlaceholderNode(kind);
+        } catch (UnsupportedOperationException e) {
+            throw new IllegalStateException("The node factory doesn't support " + kind + " placeholder nodes", e);
+        }
+    }
+
+    private boolean isGuarded() {
+        return listingTimeout > 0 || maxListingsPerStore > 0;
+    }
+
+    /**
+     * Runs the filesystem access within the limit of the store of the directory.
+     *
+     * @param start Start of the access ({@link System#nanoTime()}), for the deadline.
+     * @param mayBlock Whether to wait for the limit without the deadline.
+     * @throws CompletionException With {@link TimeoutException} if the limit isn't available until the deadline.
+     */
+    private <R> R withinStoreLimit(Path dir, long start, boolean mayBlock, Supplier<R> access) {
+        int max = maxListingsPerStore;
+        if (max == 0) {
+            return access.get();
+        }
+        Semaphore bulkhead;
+        try {
+            bulkhead = storeBulkheads.computeIfAbsent(storeKey(dir), key -> new Semaphore(max));
         } catch (IOException e) {
-            leaf = true;
+            return access.get();
+        }
+        long timeout = listingTimeout;
+        try {
+            boolean acquired;
+            if (timeout > 0) {
+                acquired = bulkhead.tryAcquire(TimeUnit.MILLISECONDS.toNanos(timeout) - (System.nanoTime() - start),
+                        TimeUnit.NANOSECONDS);
+            } else if (mayBlock) {
+                bulkhead.acquire();
+                acquired = true;
+            } else {
+                acquired = bulkhead.tryAcquire();
+            }
+            if (!acquired) {
+                throw new CompletionException(new TimeoutException("Store limit: " + dir));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+        try {
+            return access.get();
+        } finally {
+            bulkhead.release();
         }
-        return leaf;
     }
 
-    @Override
-    public boolean isLeaf(Object node) {
-        T dirNode = (T) node;
-        return leafStatus.computeIfAbsent(dirNode, this::computeLeafStatus);
+    /**
+     * @return Device of the directory where the filesystem reports it, otherwise its root. Unlike
+     * {@link Files#getFileStore(Path)}, doesn't scan the mount table.
+     */
+    private static Object storeKey(Path dir) throws IOException {
+        if (dir.getFileSystem().supportedFileAttributeViews().contains("unix")) {
+            return Files.getAttribute(dir, "unix:dev");
+        }
+        Path root = dir.toAbsolutePath().getRoot();
+        return root != null ? root : dir.getFileSystem();
     }
 
-    @Override
-    public int getIndexOfChild(Object parent, Object child) {
-        T dirNode = (T) parent;
-        ensurePopulated(dirNode);
-        return dirNode.getIndex((T) child);
+    /**
+     * Runs the filesystem access asynchronously, within the limit of the store and the deadline.
+     */
+    private <R> CompletableFuture<R> guardedAsync(Path dir, Supplier<R> access, Executor executor) {
+        long start = System.nanoTime();
+        CompletableFuture<R> future = CompletableFuture.supplyAsync(() -> withinStoreLimit(dir, start, true, access),
+                executor);
+        long timeout = listingTimeout;
+        return timeout > 0 ? future.orTimeout(timeout, TimeUnit.MILLISECONDS) : future;
     }
 
-    @Override
-    public void valueForPathChanged(TreePath path, Object newValue) {
-        // this is read-only model
+    /**
+     * Runs the filesystem access on the current thread (waiting at most until the deadline) within the limit of the
+     * store.
+     *
+     * @return Result of the access or {@code null} if it has timed out.
+     */
+    private <R> R guarded(Path dir, Supplier<R> access) {
+        if (listingTimeout == 0) {
+            return nullOnTimeout(() -> withinStoreLimit(dir, System.nanoTime(), false, access));
+        }
+        Executor executor = listingExecutor;
+        if (executor == null) {
+            executor = getDeadlineExecutor();
+        }
+        CompletableFuture<R> future = guardedAsync(dir, access, executor);
+        return nullOnTimeout(future::join);
     }
 
-    @Override
-    public void addTreeModelListener(TreeModelListener l) {
-        // no need to store listener - this model doesn't change for external observer
+    /**
+     * @return Result of the supplier or {@code null} if it has thrown {@link CompletionException} caused by
+     * {@link TimeoutException}.
+     */
+    private static <R> R nullOnTimeout(Supplier<R> supplier) {
+        try {
+            return supplier.get();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                return null;
+            }
+            throw e;
+        }
     }
 
-    @Override
-    public void removeTreeModelListener(TreeModelListener l) {
-        // this model is read-only for external observer
+    private static boolean isTimeout(Throwable ex) {
+        return ex instanceof TimeoutException || (ex instanceof CompletionException
+                && ex.getCause() instanceof TimeoutException);
+    }
+
+    private ExecutorService getDeadlineExecutor() {
+        ExecutorService executor = deadlineExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = deadlineExecutor;
+                if (executor == null) {
+                    executor = DirTreeUtils.newListingExecutor();
+                    deadlineExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private synchronized void shutdownDeadlineExecutorIfUnguarded() {
+        ExecutorService executor = deadlineExecutor;
+        if (executor != null && !isGuarded()) {
+            executor.shutdown();
+            deadlineExecutor = null;
+        }
+    }
+
+    DirLister getLister() {
+        return hierarchy.getLister();
+    }
+
+    /**
+     * Enables or disables synchronization of the model with the filesystem. When enabled, the populated directories
+     * which are expanded and visible in the tree are watched for created or deleted subdirectories and the model
+     * updates itself as if {@link #refresh(DirNode)} was called. A burst of changes in a directory results in a single
+     * update. Filesystems which don't support {@link java.nio.file.WatchService} are polled.
+     * <p>
+     * Requires the tree to report its expansion state to the model - see {@link #nodeExpanded(DirNode)}.
+     *
+     * @param watching {@code true} to enable watching. Disabled by default.
+     */
+    public synchronized void setWatching(boolean watching) {
+        if (watching == (watcher != null)) {
+            return;
+        }
+        if (watching) {
+            watcher = new DirWatcher(this::directoryChanged, DirWatcher.DEFAULT_DEBOUNCE_MILLIS,
+                    DirWatcher.DEFAULT_POLL_MILLIS);
+            watchSubtree(root);
+        } else {
+            watcher.close();
+            watcher = null;
+            watchedNodes.clear();
+        }
+    }
+
+    /**
+     * @see #setWatching(boolean)
+     */
+    public boolean isWatching() {
+        return watcher != null;
+    }
+
+    /**
+     * Notifies the model that the node was expanded in the tree. The model uses the expansion state to limit its
+     * background activities (e.g. watching) to the visible part of the tree.
+     * {@link DirTreeUtils#configureTree(javax.swing.JTree, DirTreeModel)} installs a listener which calls this method.
+     */
+    public void nodeExpanded(T node) {
+        if (node.getPlaceholderKind() == PlaceholderKind.MORE) {
+            T parent = parentOf(node);
+            if (parent != null) {
+                SwingUtilities.invokeLater(() -> loadNextPage(parent)); // not while the tree handles the expansion
+            }
+            return;
+        }
+        if (node.getPlaceholderKind() == PlaceholderKind.TIMED_OUT) {
+            T parent = parentOf(node);
+            if (parent != null) {
+                SwingUtilities.invokeLater(() -> retry(parent));
+            }
+            return;
+        }
+        expanded.add(node);
+        if (isVisible(node)) {
+            watchSubtree(node);
+            schedulePrefetch(node);
+        }
+    }
+
+    /**
+     * Notifies the model that the node was collapsed in the tree.
+     *
+     * @see #nodeExpanded(DirNode)
+     */
+    public void nodeCollapsed(T node) {
+        expanded.remove(node);
+        unwatchSubtree(node);
+        cancelPrefetch(node);
+        CompletableFuture<List<Path>> pending = loading.remove(node);
+        if (pending != null) {
+            // abandon the listing, the node is listed again when expanded
+            pending.cancel(false);
+            SwingUtilities.invokeLater(() -> {
+                if (isAttached(node) && !loading.containsKey(node)) {
+                    reset(node);
+                }
+            });
+        }
+    }
+
+    /**
+     * Lists again the directory of the node whose listing has timed out.
+     */
+    private void retry(T node) {
+        if (isTimedOut(node) && isAttached(node)) {
+            reset(node);
+        }
+    }
+
+    private boolean isTimedOut(T node) {
+        int count = node.getChildCount();
+        return count > 0 && node.getChildAt(count - 1).getPlaceholderKind() == PlaceholderKind.TIMED_OUT;
+    }
+
+    private boolean isExpanded(TreeNode node) {
+        return node == root || expanded.contains(node);
+    }
+
+    /**
+     * @return Parent of the node, which is of the same type (see {@link DirNode}).
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends DirNode<T>> T parentOf(T node) {
+        return (T) node.getParent(); // only the model adds the children, all of type T
+    }
+
+    /**
+     * @return {@code true} if the node is expanded and all its ancestors are expanded too.
+     */
+    private boolean isShownExpanded(T node) {
+        return isExpanded(node) && isVisible(node);
+    }
+
+    private boolean isVisible(T node) {
+        for (TreeNode n = node.getParent(); n != null; n = n.getParent()) {
+            if (!isExpanded(n)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Watches the node and its expanded descendants.
+     */
+    private void watchSubtree(T node) {
+        DirWatcher w = watcher;
+        if (w == null) {
+            return;
+        }
+        Deque<T> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            T n = stack.pop();
+            if (!isExpanded(n) || !populated.contains(n)) {
+                continue;
+            }
+            Path dir = n.getDirectory();
+            if (dir != null) {
+                watchedNodes.put(dir, n);
+                w.watch(dir);
+            }
+            for (int i = 0; i < n.getChildCount(); i++) {
+                stack.push(n.getChildAt(i));
+            }
+        }
+    }
+
+    private void unwatchSubtree(T node) {
+        if (watcher == null) {
+            return;
+        }
+        Deque<T> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            T n = stack.pop();
+            unwatch(n);
+            if (populated.contains(n)) {
+                for (int i = 0; i < n.getChildCount(); i++) {
+                    stack.push(n.getChildAt(i));
+                }
+            }
+        }
+    }
+
+    private void unwatch(T node) {
+        Path dir = node.getDirectory();
+        DirWatcher w = watcher;
+        if (dir != null && watchedNodes.remove(dir, node) && w != null) {
+            w.unwatch(dir);
+        }
+    }
+
+    /**
+     * Invoked by the watcher when the watched directory has changed. With the deadline or the store limits (see
+     * {@link #setListingTimeout(long)}), the directory is listed off the watcher thread even in synchronous mode, so a
+     * hung filesystem can't stall the detection of the other changes. A listing which times out is ignored.
+     */
+    private void directoryChanged(Path dir) {
+        T node = watchedNodes.get(dir);
+        if (node == null) {
+            return;
+        }
+        Executor executor = listingExecutor;
+        int limit = refreshLimit(node);
+        Supplier<List<Path>> listing = () -> listAgain(dir, limit);
+        CompletableFuture<List<Path>> future;
+        if (isGuarded()) {
+            future = guardedAsync(dir, listing, executor != null ? executor : getDeadlineExecutor());
+        } else {
+            future = CompletableFuture.supplyAsync(listing, executor != null ? executor : Runnable::run);
+        }
+        future.thenAcceptAsync(children -> applyListing(node, children, limit), SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Limits the memory used by the model. When a limit is exceeded, the model unloads children of the least recently
+     * accessed populated directories which are not shown expanded in the tree (collapsed, or expanded under a
+     * collapsed ancestor), and fires {@link TreeModelListener#treeStructureChanged} for them. The unloaded directories
+     * are populated again when accessed. The eviction is performed on the EDT.
+     * <p>
+     * Requires the tree to report its expansion state to the model - see {@link #nodeExpanded(DirNode)}.
+     *
+     * @param maxPopulatedDirectories Max. number of populated directory nodes. 0 - unlimited (default).
+     * @param maxNodeCount Max. number of directory nodes (see {@link #getNodeCount()}). 0 - unlimited (default).
+     * @throws IllegalStateException If the nodes don't support {@link DirNode#remove(int)}.
+     */
+    public void setEvictionLimits(int maxPopulatedDirectories, int maxNodeCount) {
+        if (maxPopulatedDirectories < 0 || maxNodeCount < 0) {
+            throw new IllegalArgumentException("Negative limit");
+        }
+        if (maxPopulatedDirectories > 0 || maxNodeCount > 0) {
+            requireRemove();
+        }
+        boolean wasEnabled = isEvictionEnabled();
+        this.maxPopulatedDirectories = maxPopulatedDirectories;
+        this.maxNodeCount = maxNodeCount;
+        if (!isEvictionEnabled()) {
+            lru.clear();
+        } else {
+            if (!wasEnabled) {
+                populated.stream().filter(n -> n.getDirectory() != null).forEach(n -> lru.put(n, Boolean.TRUE));
+            }
+            scheduleEviction();
+        }
+    }
+
+    /**
+     * Fails fast if a feature requires removal of children, which the nodes don't support.
+     */
+    private void requireRemove() {
+        T parent = nodeFactory.createDirectoryNode(Path.of("probe"), true);
+        parent.add(nodeFactory.createDirectoryNode(Path.of("probe", "child"), false));
+        try {
+            parent.removeAllChildren();
+        } catch (UnsupportedOperationException e) {
+            throw new IllegalStateException("The nodes don't support removal of children", e);
+        }
+    }
+
+    private boolean isEvictionEnabled() {
+        return maxPopulatedDirectories > 0 || maxNodeCount > 0;
+    }
+
+    /**
+     * @return Current number of directory nodes in the model.
+     */
+    public int getNodeCount() {
+        return nodeCount.get();
+    }
+
+    /**
+     * @return Number of populated directory nodes whose children were unloaded by the model.
+     * @see #setEvictionLimits(int, int)
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Enables predictive prefetch: when a directory node is expanded in the tree, its subdirectories are listed
+     * speculatively in background (on low priority threads), so that their expansion is served from memory. The
+     * prefetched listings are dropped when the directory is collapsed and are not used after
+     * {@value #PREFETCH_MAX_AGE_MILLIS} ms. No prefetch is done when the memory is low or the eviction limits (see
+     * {@link #setEvictionLimits(int, int)}) are exceeded.
+     * <p>
+     * Requires the tree to report its expansion state to the model - see {@link #nodeExpanded(DirNode)}.
+     *
+     * @param maxConcurrent Max. number of directories listed concurrently. 0 - no prefetch (default).
+     * @param maxPerDirectory Max. number of subdirectories to prefetch for an expanded directory.
+     * @see #getPrefetchCount()
+     * @see #getPrefetchHitCount()
+     */
+    public synchronized void setPrefetch(int maxConcurrent, int maxPerDirectory) {
+        if (maxConcurrent < 0 || maxPerDirectory < 0) {
+            throw new IllegalArgumentException("Negative limit");
+        }
+        ThreadPoolExecutor executor = prefetchExecutor;
+        if (executor != null) {
+            executor.shutdownNow();
+            prefetchExecutor = null;
+            prefetchQueue.clear();
+            prefetched.clear();
+        }
+        this.maxPrefetchPerDirectory = maxPerDirectory;
+        if (maxConcurrent > 0 && maxPerDirectory > 0) {
+            executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "dir-tree-prefetch");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            });
+            executor.allowCoreThreadTimeOut(true);
+            prefetchExecutor = executor;
+        }
+    }
+
+    /**
+     * @return Number of directories listed by prefetch.
+     * @see #setPrefetch(int, int)
+     */
+    public long getPrefetchCount() {
+        return prefetchCount.get();
+    }
+
+    /**
+     * @return Number of directories populated from the prefetched listings. Hit ratio of the prefetch is
+     * {@code getPrefetchHitCount() / getPrefetchCount()}.
+     * @see #setPrefetch(int, int)
+     */
+    public long getPrefetchHitCount() {
+        return prefetchHitCount.get();
+    }
+
+    /**
+     * Prefetches subdirectories of the expanded populated node.
+     */
+    private void schedulePrefetch(T node) {
+        ThreadPoolExecutor executor = prefetchExecutor;
+        if (executor == null || !populated.contains(node) || loading.containsKey(node) || isPrefetchSuspended()) {
+            return;
+        }
+        int budget = maxPrefetchPerDirectory;
+        for (int i = 0; i < node.getChildCount() && budget > 0; i++) {
+            T child = node.getChildAt(i);
+            Path dir = child.getDirectory();
+            if (dir == null || populated.contains(child) || prefetched.containsKey(child)
+                    || Boolean.TRUE.equals(leafStatus.get(child)) || !prefetchQueue.add(child)) {
+                continue;
+            }
+            budget--;
+            executor.execute(() -> {
+                if (!prefetchQueue.remove(child) || isPrefetchSuspended()) {
+                    return; // cancelled
+                }
+                List<Path> children = listChildren(dir);
+                prefetchCount.incrementAndGet();
+                if (!populated.contains(child) && isAttached(child)) {
+                    prefetched.put(child, new Prefetched(children));
+                }
+            });
+        }
+    }
+
+    /**
+     * Cancels the prefetch of the subdirectories of the collapsed node and drops their prefetched listings.
+     */
+    private void cancelPrefetch(T node) {
+        if (prefetchExecutor == null) {
+            return;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            T child = node.getChildAt(i);
+            prefetchQueue.remove(child);
+            prefetched.remove(child);
+        }
+    }
+
+    private boolean isPrefetchSuspended() {
+        Runtime rt = Runtime.getRuntime();
+        long used = rt.totalMemory() - rt.freeMemory();
+        return used > rt.maxMemory() / 10 * 9 || (isEvictionEnabled() && isOverLimit());
+    }
+
+    /**
+     * @return Prefetched listing of the node or {@code null}.
+     */
+    private List<Path> takePrefetched(T node) {
+        if (prefetched.isEmpty()) {
+            return null;
+        }
+        Prefetched p = prefetched.remove(node);
+        if (p == null || System.nanoTime() - p.time > TimeUnit.MILLISECONDS.toNanos(PREFETCH_MAX_AGE_MILLIS)) {
+            return null;
+        }
+        prefetchHitCount.incrementAndGet();
+        return p.children;
+    }
+
+    private static final class Prefetched {
+        final List<Path> children;
+        final long time = System.nanoTime();
+
+        Prefetched(List<Path> children) {
+            this.children = children;
+        }
+    }
+
+    private void populatedDirectory(T node) {
+        if (isEvictionEnabled() && node.getDirectory() != null) {
+            lru.put(node, Boolean.TRUE);
+            scheduleEviction();
+        }
+    }
+
+    private boolean isOverLimit() {
+        int maxPopulated = maxPopulatedDirectories;
+        int maxNodes = maxNodeCount;
+        return (maxPopulated > 0 && lru.size() > maxPopulated) || (maxNodes > 0 && nodeCount.get() > maxNodes);
+    }
+
+    private void scheduleEviction() {
+        if (isOverLimit() && evictionScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::evict);
+        }
+    }
+
+    private void evict() {
+        evictionScheduled.set(false);
+        List<T> candidates;
+        synchronized (lru) {
+            candidates = new ArrayList<>(lru.keySet()); // least recently used first
+        }
+        for (T node : candidates) {
+            if (!isOverLimit()) {
+                break;
+            }
+            if (populated.contains(node) && !loading.containsKey(node) && !isShownExpanded(node)
+                    && isAttached(node)) {
+                unload(node);
+            }
+        }
+    }
+
+    /**
+     * Removes children of the populated node. The node keeps its leaf status and will be populated again on demand.
+     */
+    private void unload(T node) {
+        lru.remove(node);
+        unwatch(node);
+        evictionCount.incrementAndGet();
+        reset(node);
+    }
+
+    /**
+     * Removes all children of the node (including placeholders), so that it is populated again on demand.
+     */
+    private void reset(T node) {
+        List<T> children;
+        synchronized (node) {
+            children = new ArrayList<>(node.getChildren());
+            node.removeAllChildren();
+            unmarkPopulated(node);
+        }
+        children.forEach(this::forgetSubtree);
+        fireTreeModelEvent(new TreeModelEvent(this, pathOf(node)), TreeModelListener::treeStructureChanged);
+    }
+
+    private static List<Path> getAllParents(Path directory) {
+        List<Path> parents = new ArrayList<>();
+        Path parent = directory;
+        while (parent != null) {
+            parents.add(parent);
+            parent = parent.getParent();
+        }
+        Collections.reverse(parents); // so the root is first
+        return parents;
+    }
+
+    /**
+     * @param directory Local filesystem directory. Must be absolute as specified by {@link Path#isAbsolute()}.
+     * @return {@link Optional} with the tree path of the specified directory or empty {@link Optional} if the
+     * directory is not in the model (e.g. doesn't exist, doesn't pass the filter, etc.).
+     * @implNote A side-effect of this method invocation is that the model populates itself with the nodes required by
+     * the {@link TreePath}. It can be used to build and prepopulate the model on any thread before passing it to
+     * the EDT. Once the model is displayed, this method should be invoked on the EDT. If the model nodes support
+     * concurrent reads (see {@link ConcurrentNodeFactory}), it can be invoked on any thread for the directories whose
+     * ancestors are populated already: populating a node fires {@link TreeModelEvent}s on the calling thread.
+     */
+    public Optional<TreePath> getTreePath(Path directory) {
+        requireNonNull(directory);
+        if (!directory.isAbsolute()) {
+            throw new IllegalArgumentException("The directory path must be absolute.");
+        }
+        T fsNode = getFileSystemNode(directory.getFileSystem());
+        if (fsNode == null || !hierarchy.accept(directory)) {
+            return Optional.empty();
+        }
+        final List<Path> parents = getAllParents(directory);
+        final int size = parents.size();
+        List<T> treePathNodes = new ArrayList<>(size + 2);
+        treePathNodes.add(getRoot());
+        treePathNodes.add(fsNode);
+        T currentNode = fsNode;  // start with filesystem node
+        for (int i = 0; i < size; i++) {
+            List<T> children = currentNode.getChildren(); // snapshot for concurrent nodes
+            int index = indexOfChild(children, parents.get(i));
+            if (index < 0) {
+                index = loadPagesThrough(currentNode, parents.get(i));
+                children = currentNode.getChildren();
+            }
+            if (index < 0) {
+                return Optional.empty();
+            }
+            T node = children.get(index);
+            treePathNodes.add(node);
+            if (i == (size - 1)) {
+                return Optional.of(new TreePath(treePathNodes.toArray()));
+            }
+            populateNow(node);
+            currentNode = node;
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Populates the model with the specified directories, their ancestors and subdirectories up to the specified
+     * depth, e.g. to restore previously expanded directories at startup. The directories are listed concurrently
+     * (each directory only once) on the {@link #getListingExecutor() listing executor} or, if the model is
+     * synchronous, on a temporary executor created via {@link DirTreeUtils#newListingExecutor()}. The listings are
+     * then attached to the model on the EDT, firing {@link TreeModelListener#treeNodesInserted} events. Directories
+     * which are already populated at that moment are kept as they are.
+     *
+     * @param directories Absolute directory paths. Directories which are not in the model are ignored.
+     * @param depth Number of levels of subdirectories to populate below each directory. 0 populates the directories
+     * themselves only.
+     * @return Future completed once the listings are attached to the model. Should not be waited for on the EDT.
+     */
+    public CompletableFuture<Void> prepopulate(Collection<Path> directories, int depth) {
+        requireNonNull(directories);
+        if (depth < 0) {
+            throw new IllegalArgumentException("Negative depth");
+        }
+        for (Path directory : directories) {
+            if (!directory.isAbsolute()) {
+                throw new IllegalArgumentException("The directory path must be absolute.");
+            }
+        }
+        Executor executor = listingExecutor;
+        ExecutorService ownExecutor = executor == null ? DirTreeUtils.newListingExecutor() : null;
+        Map<Path, CompletableFuture<List<Path>>> listings = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Path directory : directories) {
+            if (hierarchy.accept(directory)) {
+                for (Path parent : getAllParents(directory)) {
+                    futures.add(prefetch(parent, parent.equals(directory) ? depth : 0, listings,
+                            executor != null ? executor : ownExecutor));
+                }
+            }
+        }
+        CompletableFuture<Void> result = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenAcceptAsync(ignored -> {
+                    for (Path directory : directories) {
+                        attachListings(directory, depth, listings);
+                    }
+                }, SwingUtilities::invokeLater);
+        if (ownExecutor != null) {
+            result.whenComplete((ignored, ex) -> ownExecutor.shutdown());
+        }
+        return result;
+    }
+
+    /**
+     * Lists the directory and its subdirectories up to the depth. Each directory is listed only once.
+     */
+    private CompletableFuture<Void> prefetch(Path dir, int depth, Map<Path, CompletableFuture<List<Path>>> listings,
+                                             Executor executor) {
+        CompletableFuture<List<Path>> listing = listings.computeIfAbsent(dir,
+                d -> CompletableFuture.supplyAsync(() -> listChildren(d), executor));
+        if (depth == 0) {
+            return listing.thenAccept(children -> {
+            });
+        }
+        return listing.thenCompose(children -> CompletableFuture.allOf(children.stream()
+                .map(child -> prefetch(child, depth - 1, listings, executor))
+                .toArray(CompletableFuture<?>[]::new)));
+    }
+
+    private void attachListings(Path directory, int depth, Map<Path, CompletableFuture<List<Path>>> listings) {
+        T node = getFileSystemNode(directory.getFileSystem());
+        if (node == null || !hierarchy.accept(directory)) {
+            return;
+        }
+        for (Path parent : getAllParents(directory)) {
+            int index = indexOfChild(node, parent);
+            if (index < 0) {
+                return;
+            }
+            node = node.getChildAt(index);
+            attachListing(node, listings);
+        }
+        attachSubtree(node, depth, listings);
+    }
+
+    private void attachSubtree(T node, int depth, Map<Path, CompletableFuture<List<Path>>> listings) {
+        if (depth == 0 || loading.containsKey(node)) {
+            return;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            T child = node.getChildAt(i);
+            if (child.getDirectory() != null) {
+                attachListing(child, listings);
+                attachSubtree(child, depth - 1, listings);
+            }
+        }
+    }
+
+    /**
+     * Populates the node with the prefetched listing unless it is populated already.
+     */
+    private void attachListing(T node, Map<Path, CompletableFuture<List<Path>>> listings) {
+        CompletableFuture<List<Path>> listing = listings.get(node.getDirectory());
+        if (listing == null) {
+            return;
+        }
+        List<Path> children = listing.join();
+        CompletableFuture<List<Path>> pending = loading.get(node);
+        if (pending != null) {
+            completeLoading(node, pending, children);
+        } else if (populate(node, () -> children) && !children.isEmpty()) {
+            fireTreeNodesInserted(pathOf(node), indicesOf(node), childrenOf(node));
+        }
+    }
+
+    /**
+     * @return Model root node. Created via to call to {@link DirNodeFactory#createRootNode()}.
+     */
+    @Override
+    public T getRoot() {
+        return root;
+    }
+
+    @Override
+    public T getChild(Object parent, int index) {
+        T dirNode = (T) parent;
+        ensurePopulated(dirNode);
+        return dirNode.getChildAt(index);
+    }
+
+    private List<Path> listChildren(Path dir) {
+        return listChildren(dir, null, pageLimit(), null);
+    }
+
+    private List<Path> listChildren(Path dir, Path after, int limit) {
+        return listChildren(dir, after, limit, null);
+    }
+
+    /**
+     * @param after If not {@code null}, only the subdirectories which follow it in the page order are listed.
+     * @param limit Max. number of the first subdirectories (in the page order) to list. {@link Integer#MAX_VALUE} -
+     * all subdirectories.
+     * @param publisher If not {@code null}, receives the subdirectories of a complete listing while they are listed.
+     * @return Sorted subdirectories.
+     * @see PageCollector
+     */
+    private List<Path> listChildren(Path dir, Path after, int limit, BatchPublisher publisher) {
+        List<Path> children;
+        try {
+            children = sharedHierarchy && after == null && limit == Integer.MAX_VALUE ?
+                    hierarchy.getChildren(dir, publisher) : hierarchy.list(dir, after, limit, publisher);
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+        DirNameIndex index = nameIndex;
+        if (index != null && after == null && limit == Integer.MAX_VALUE) {
+            index.listed(dir, children);
+        }
+        return children;
+    }
+
+    private void addChildren(T node, List<Path> children) {
+        Boolean probedLeaf = leafStatus.put(node, children.isEmpty());
+        if (probedLeaf != null && probedLeaf != children.isEmpty()) {
+            SwingUtilities.invokeLater(() -> fireNodeChanged(node)); // correct the expand handle
+        }
+        int size = pageSize;
+        boolean hasMore = size > 0 && children.size() > size;
+        List<Path> page = hasMore ? children.subList(0, size) : children;
+        List<T> childNodes = new ArrayList<>(page.size() + 1);
+        for (Path childPath : page) {
+            childNodes.add(newChildNode(childPath));
+        }
+        if (hasMore) {
+            childNodes.add(nodeFactory.createPlaceholderNode(PlaceholderKind.MORE));
+        }
+        node.addAll(childNodes);
+    }
+
+    /**
+     * @return New node for the listed subdirectory, with the leaf status from the hierarchy (its cache or
+     * {@link ListingSnapshot}) if available.
+     */
+    private T newChildNode(Path dir) {
+        T child = newDirectoryNode(dir, false);
+        Boolean leaf = hierarchy.getKnownLeaf(dir);
+        if (leaf != null) {
+            leafStatus.put(child, leaf); // no need to probe
+        }
+        return child;
+    }
+
+    private T newDirectoryNode(Path dir, boolean filesystemRoot) {
+        nodeCount.incrementAndGet();
+        return nodeFactory.createDirectoryNode(dir, filesystemRoot);
+    }
+
+    private void ensurePopulated(T node) {
+        if (node.getPlaceholderKind() != null) {
+            return;
+        }
+        if (isEvictionEnabled()) {
+            lru.get(node); // update access order
+        }
+        if (!populated.contains(node)) {
+            List<Path> prefetchedChildren = takePrefetched(node);
+            if (prefetchedChildren != null) {
+                populate(node, () -> prefetchedChildren);
+                return;
+            }
+            Executor executor = listingExecutor;
+            if (executor == null) {
+                populateNow(node);
+            } else {
+                startLoading(node, executor);
+            }
+        }
+    }
+
+    /**
+     * Populates the node on the current thread. If the node is being listed in background, waits for the listing.
+     */
+    private void populateNow(T node) {
+        CompletableFuture<List<Path>> pending = loading.get(node);
+        if (pending != null) {
+            completeLoading(node, pending, pending.join());
+        } else if (!populated.contains(node)) {
+            Path dir = node.getDirectory();
+            populate(node, () -> isGuarded() ? guarded(dir, () -> listChildren(dir)) : listChildren(dir));
+        }
+    }
+
+    /**
+     * Atomically populates the node unless it is populated already, so that threads racing to populate the same node
+     * don't add its children twice. The directory is listed outside the lock of the node (which the EDT takes to start
+     * loading), so a racing thread may list it in vain.
+     *
+     * @param children Supplies the listing of the node or {@code null} if the listing has timed out.
+     * @return {@code true} if the node has been populated by this invocation.
+     */
+    private boolean populate(T node, Supplier<List<Path>> children) {
+        if (populated.contains(node)) {
+            return false;
+        }
+        Path dir = node.getDirectory();
+        if (sharedHierarchy) {
+            hierarchy.retain(dir); // before the listing, so that the hierarchy keeps it
+        }
+        List<Path> listing;
+        try {
+            listing = children.get();
+        } catch (RuntimeException | Error e) {
+            if (sharedHierarchy) {
+                hierarchy.release(dir);
+            }
+            throw e;
+        }
+        synchronized (node) {
+            if (populated.contains(node)) {
+                if (sharedHierarchy) {
+                    hierarchy.release(dir);
+                }
+                return false;
+            }
+            if (listing != null) {
+                addChildren(node, listing);
+            } else {
+                node.add(nodeFactory.createPlaceholderNode(PlaceholderKind.TIMED_OUT));
+                leafStatus.put(node, Boolean.FALSE);
+            }
+            populated.add(node);
+        }
+        if (listing != null) {
+            populatedDirectory(node);
+        }
+        return true;
+    }
+
+    private void markPopulated(T node) {
+        if (populated.add(node) && sharedHierarchy) {
+            hierarchy.retain(node.getDirectory());
+        }
+    }
+
+    /**
+     * @return {@code true} if the node was populated.
+     */
+    private boolean unmarkPopulated(T node) {
+        boolean removed = populated.remove(node);
+        if (removed && sharedHierarchy && node.getDirectory() != null) {
+            hierarchy.release(node.getDirectory());
+        }
+        return removed;
+    }
+
+    private void startLoading(T node, Executor executor) {
+        synchronized (node) {
+            if (populated.contains(node)) {
+                return;
+            }
+            node.add(nodeFactory.createPlaceholderNode(PlaceholderKind.LOADING));
+            markPopulated(node);
+        }
+        Path dir = node.getDirectory();
+        int interval = batchInterval;
+        BatchPublisher publisher = interval > 0 && pageSize == 0 && hierarchy.getListingSnapshot() == null ?
+                new BatchPublisher(interval, pathComparator, batch -> insertBatch(node, batch)) : null;
+        Supplier<List<Path>> listing = () -> listChildren(dir, null, pageLimit(), publisher);
+        CompletableFuture<List<Path>> future = (isGuarded() ? guardedAsync(dir, listing, executor) :
+                CompletableFuture.supplyAsync(listing, executor))
+                .handle((children, ex) -> ex == null ? children : isTimeout(ex) ? null : Collections.emptyList());
+        loading.put(node, future);
+        future.thenAcceptAsync(children -> completeLoading(node, future, children), SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Replaces the loading placeholder of the node with the listed children.
+     *
+     * @param children Listing or {@code null} if it has timed out.
+     */
+    private void completeLoading(T node, CompletableFuture<List<Path>> future, List<Path> children) {
+        if (!loading.remove(node, future)) {
+            return; // already completed by populateNow or cancelled
+        }
+        TreePath path = pathOf(node);
+        int placeholderIndex = node.getChildCount() - 1; // after the streamed children (if any)
+        T placeholder = node.getChildAt(placeholderIndex);
+        node.remove(placeholderIndex);
+        fireTreeNodesRemoved(path, new int[]{placeholderIndex}, new Object[]{placeholder});
+        if (children == null) {
+            node.add(nodeFactory.createPlaceholderNode(PlaceholderKind.TIMED_OUT));
+            leafStatus.put(node, Boolean.FALSE);
+            fireTreeNodesInserted(path, new int[]{node.getChildCount() - 1},
+                    new Object[]{node.getChildAt(node.getChildCount() - 1)});
+            return;
+        }
+        if (node.getChildCount() > 0) {
+            Set<Path> streamed = new HashSet<>();
+            for (int i = 0; i < node.getChildCount(); i++) {
+                streamed.add(node.getChildAt(i).getDirectory());
+            }
+            List<Path> rest = new ArrayList<>(children.size() - streamed.size());
+            for (Path child : children) {
+                if (!streamed.contains(child)) {
+                    rest.add(child);
+                }
+            }
+            mergeChildren(node, rest);
+            leafStatus.put(node, Boolean.FALSE);
+        } else {
+            addChildren(node, children);
+            if (!children.isEmpty()) {
+                fireTreeNodesInserted(path, indicesOf(node), childrenOf(node));
+            }
+        }
+        populatedDirectory(node);
+        if (expanded.contains(node) && isVisible(node)) {
+            schedulePrefetch(node);
+        }
+    }
+
+    /**
+     * Inserts the batch of streamed children into the loading node.
+     *
+     * @see BatchPublisher
+     */
+    private void insertBatch(T node, List<Path> batch) {
+        if (batch.isEmpty() || !loading.containsKey(node) || !isAttached(node)) {
+            return; // loading has been completed or cancelled
+        }
+        Boolean probedLeaf = leafStatus.put(node, Boolean.FALSE);
+        if (Boolean.TRUE.equals(probedLeaf)) {
+            fireNodeChanged(node);
+        }
+        mergeChildren(node, batch);
+    }
+
+    /**
+     * Merges the sorted paths into the sorted children of the node (placeholders stay last) and fires
+     * {@link TreeModelListener#treeNodesInserted} for the new nodes.
+     */
+    private void mergeChildren(T node, List<Path> sorted) {
+        if (sorted.isEmpty()) {
+            return;
+        }
+        List<T> current = new ArrayList<>(node.getChildCount());
+        List<T> placeholders = new ArrayList<>();
+        for (T child : node.getChildren()) {
+            (child.getDirectory() != null ? current : placeholders).add(child);
+        }
+        List<T> merged = new ArrayList<>(current.size() + sorted.size() + placeholders.size());
+        int[] indices = new int[sorted.size()];
+        Object[] inserted = new Object[sorted.size()];
+        int i = 0;
+        for (Path dir : sorted) {
+            while (i < current.size() && pathComparator.compare(current.get(i).getDirectory(), dir) <= 0) {
+                merged.add(current.get(i++));
+            }
+            T child = newChildNode(dir);
+            indices[merged.size() - i] = merged.size();
+            inserted[merged.size() - i] = child;
+            merged.add(child);
+        }
+        merged.addAll(current.subList(i, current.size()));
+        merged.addAll(placeholders);
+        node.replaceChildren(merged);
+        fireTreeNodesInserted(pathOf(node), indices, inserted);
+    }
+
+    private static int[] indicesOf(TreeNode node) {
+        int[] indices = new int[node.getChildCount()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+
+    private static Object[] childrenOf(TreeNode node) {
+        Object[] children = new Object[node.getChildCount()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = node.getChildAt(i);
+        }
+        return children;
+    }
+
+    /**
+     * Lists the directory of the populated node again and updates the node children. Fires
+     * {@link TreeModelListener#treeNodesRemoved} and {@link TreeModelListener#treeNodesInserted} events only for the
+     * changed children. Does nothing if the node is not populated yet. If the listing of the node has timed out, the
+     * node is populated again on demand. Should be invoked on the EDT.
+     *
+     * @see #setWatching(boolean)
+     */
+    public void refresh(T node) {
+        if (isTimedOut(node)) {
+            retry(node);
+            return;
+        }
+        Path dir = node.getDirectory();
+        if (dir != null && populated.contains(node) && !loading.containsKey(node)) {
+            int limit = refreshLimit(node);
+            List<Path> children = isGuarded() ? guarded(dir, () -> listAgain(dir, limit)) : listAgain(dir, limit);
+            if (children != null) {
+                applyListing(node, children, limit);
+            }
+        }
+    }
+
+    /**
+     * Lists the populated directory again, bypassing the cache of the shared hierarchy.
+     */
+    private List<Path> listAgain(Path dir, int limit) {
+        if (sharedHierarchy && limit == Integer.MAX_VALUE) {
+            hierarchy.invalidate(dir);
+        }
+        return listChildren(dir, null, limit);
+    }
+
+    /**
+     * @return Max. number of children to list when the populated node is listed again: the loaded pages and one more
+     * child to detect the next page.
+     */
+    private int refreshLimit(T node) {
+        if (pageSize == 0 && getMorePlaceholder(node) == null) {
+            return Integer.MAX_VALUE;
+        }
+        int loaded = 0;
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (node.getChildAt(i).getDirectory() != null) {
+                loaded++;
+            }
+        }
+        return Math.max(loaded, pageSize) + 1;
+    }
+
+    /**
+     * Updates children of the populated node according to the new listing of its directory.
+     *
+     * @param children New listing, sorted by the model comparator.
+     * @param limit Limit of the listing (see {@link #refreshLimit(DirNode)}).
+     */
+    private void applyListing(T node, List<Path> children, int limit) {
+        if (!populated.contains(node) || loading.containsKey(node) || loadingPages.contains(node)
+                || !isAttached(node)) {
+            return;
+        }
+        boolean hasMore = limit != Integer.MAX_VALUE && children.size() >= limit;
+        if (hasMore) {
+            children = children.subList(0, limit - 1);
+        }
+        TreePath path = pathOf(node);
+        Set<Path> newDirs = new HashSet<>(children);
+        List<Integer> removedIndices = new ArrayList<>();
+        List<T> removedNodes = new ArrayList<>();
+        for (int i = 0; i < node.getChildCount(); i++) {
+            T child = node.getChildAt(i);
+            if (child.getDirectory() != null && !newDirs.contains(child.getDirectory())) {
+                removedIndices.add(i);
+                removedNodes.add(child);
+            }
+        }
+        for (int i = removedIndices.size() - 1; i >= 0; i--) {
+            node.remove(removedIndices.get(i));
+        }
+        removedNodes.forEach(this::forgetSubtree);
+        if (!removedNodes.isEmpty()) {
+            fireTreeNodesRemoved(path, toIntArray(removedIndices), removedNodes.toArray());
+        }
+        List<T> staleNodes = forgetLeafStatus(node);
+
+        Set<Path> currentDirs = new HashSet<>();
+        for (int i = 0; i < node.getChildCount(); i++) {
+            currentDirs.add(node.getChildAt(i).getDirectory());
+        }
+        List<Integer> insertedIndices = new ArrayList<>();
+        List<T> insertedNodes = new ArrayList<>();
+        int index = 0;
+        for (Path dir : children) {
+            T current = index < node.getChildCount() ? node.getChildAt(index) : null;
+            if (current == null || !dir.equals(current.getDirectory())) {
+                if (currentDirs.contains(dir)) {
+                    rebuildChildren(node, children, hasMore); // order of the existing children has changed
+                    return;
+                }
+                T child = newChildNode(dir);
+                node.insert(child, index);
+                insertedIndices.add(index);
+                insertedNodes.add(child);
+            }
+            index++;
+        }
+        leafStatus.put(node, children.isEmpty());
+        if (!insertedNodes.isEmpty()) {
+            fireTreeNodesInserted(path, toIntArray(insertedIndices), insertedNodes.toArray());
+        }
+        if (!staleNodes.isEmpty()) {
+            int[] staleIndices = new int[staleNodes.size()];
+            for (int i = 0; i < staleIndices.length; i++) {
+                staleIndices[i] = node.getIndex(staleNodes.get(i));
+            }
+            fireTreeModelEvent(new TreeModelEvent(this, path, staleIndices, staleNodes.toArray()),
+                    TreeModelListener::treeNodesChanged); // the leaf status is determined again when displayed
+        }
+        T more = getMorePlaceholder(node);
+        if (hasMore && more == null) {
+            node.add(nodeFactory.createPlaceholderNode(PlaceholderKind.MORE));
+            fireTreeNodesInserted(path, new int[]{node.getChildCount() - 1},
+                    new Object[]{node.getChildAt(node.getChildCount() - 1)});
+        } else if (!hasMore && more != null) {
+            int moreIndex = node.getChildCount() - 1;
+            node.remove(moreIndex);
+            fireTreeNodesRemoved(path, new int[]{moreIndex}, new Object[]{more});
+        }
+    }
+
+    /**
+     * Discards the leaf status of the children which are not populated, since it's not updated by the listing of
+     * the node (e.g. a subdirectory of a child may have been created) and may come from a stale snapshot hint.
+     *
+     * @return Children whose leaf status was discarded.
+     */
+    private List<T> forgetLeafStatus(T node) {
+        List<T> stale = new ArrayList<>();
+        for (int i = 0; i < node.getChildCount(); i++) {
+            T child = node.getChildAt(i);
+            Path dir = child.getDirectory();
+            if (dir != null && !populated.contains(child) && !loading.containsKey(child)
+                    && leafStatus.remove(child) != null) {
+                if (sharedHierarchy) {
+                    hierarchy.invalidate(dir);
+                }
+                stale.add(child);
+            }
+        }
+        return stale;
+    }
+
+    private void rebuildChildren(T node, List<Path> children, boolean hasMore) {
+        Map<Path, T> existing = new HashMap<>();
+        List<T> others = new ArrayList<>();
+        for (T child : node.getChildren()) {
+            if (child.getDirectory() != null) {
+                existing.put(child.getDirectory(), child);
+            } else if (child.getPlaceholderKind() != PlaceholderKind.MORE) {
+                others.add(child);
+            }
+        }
+        List<T> rebuilt = new ArrayList<>(children.size() + others.size() + 1);
+        for (Path dir : children) {
+            T child = existing.remove(dir);
+            rebuilt.add(child != null ? child : newChildNode(dir));
+        }
+        rebuilt.addAll(others);
+        if (hasMore) {
+            rebuilt.add(nodeFactory.createPlaceholderNode(PlaceholderKind.MORE));
+        }
+        node.replaceChildren(rebuilt);
+        existing.values().forEach(this::forgetSubtree);
+        leafStatus.put(node, children.isEmpty());
+        fireTreeModelEvent(new TreeModelEvent(this, pathOf(node)), TreeModelListener::treeStructureChanged);
+    }
+
+    private boolean isAttached(T node) {
+        TreeNode n = node;
+        while (n.getParent() != null) {
+            n = n.getParent();
+        }
+        return n == root;
+    }
+
+    /**
+     * Discards the state of the removed node and its descendants.
+     */
+    private void forgetSubtree(T node) {
+        Deque<T> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            T n = stack.pop();
+            if (n.getDirectory() != null) {
+                nodeCount.decrementAndGet();
+            }
+            unwatch(n);
+            expanded.remove(n);
+            leafStatus.remove(n);
+            loading.remove(n);
+            loadingPages.remove(n);
+            prefetchQueue.remove(n);
+            prefetched.remove(n);
+            lru.remove(n);
+            if (unmarkPopulated(n)) {
+                for (int i = 0; i < n.getChildCount(); i++) {
+                    stack.push(n.getChildAt(i));
+                }
+            }
+        }
+    }
+
+    private static int[] toIntArray(List<Integer> list) {
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Override
+    public int getChildCount(Object parent) {
+        T dirNode = (T) parent;
+        if (dirNode.getPlaceholderKind() != null || Boolean.TRUE.equals(leafStatus.get(dirNode))) {
+            return 0;
+        }
+        ensurePopulated(dirNode);
+        return dirNode.getChildCount();
+    }
+
+    private boolean computeLeafStatus(T node) {
+        return sharedHierarchy ? hierarchy.isLeaf(node.getDirectory()) : hierarchy.probeLeaf(node.getDirectory());
+    }
+
+    @Override
+    public boolean isLeaf(Object node) {
+        T dirNode = (T) node;
+        if (dirNode.getPlaceholderKind() != null) {
+            // MORE is expandable to load the next page, TIMED_OUT - to list the directory again
+            return dirNode.getPlaceholderKind() == PlaceholderKind.LOADING;
+        }
+        Executor executor = listingExecutor;
+        if (executor == null) {
+            return leafStatus.computeIfAbsent(dirNode, this::probeNow);
+        }
+        Boolean leaf = leafStatus.get(dirNode);
+        if (leaf == null) {
+            startProbing(dirNode, executor);
+            return false; // optimistic until the probe completes
+        }
+        return leaf;
+    }
+
+    /**
+     * Determines leaf status of the node on the current thread.
+     */
+    private boolean probeNow(T node) {
+        if (!isGuarded()) {
+            return computeLeafStatus(node);
+        }
+        Boolean leaf = guarded(node.getDirectory(), () -> computeLeafStatus(node));
+        return leaf != null ? leaf : false; // timed out - expandable to retry
+    }
+
+    private void startProbing(T node, Executor executor) {
+        if (!probing.add(node)) {
+            return;
+        }
+        Supplier<Boolean> probe = () -> computeLeafStatus(node);
+        (isGuarded() ? guardedAsync(node.getDirectory(), probe, executor) : CompletableFuture.supplyAsync(probe, executor))
+                .handle((leaf, ex) -> ex == null ? leaf : !isTimeout(ex)) // timed out - expandable to retry
+                .thenAcceptAsync(leaf -> {
+                    probing.remove(node);
+                    if (leafStatus.putIfAbsent(node, leaf) == null && leaf) {
+                        fireNodeChanged(node); // remove expand handle
+                    }
+                }, SwingUtilities::invokeLater);
+    }
+
+    @Override
+    public int getIndexOfChild(Object parent, Object child) {
+        if (parent == null || child == null) {
+            return -1;
+        }
+        T dirNode = (T) parent;
+        T childNode = (T) child;
+        ensurePopulated(dirNode);
+        if (childNode.getParent() != dirNode) {
+            return -1;
+        }
+        Path dir = childNode.getDirectory();
+        if (dir != null && !dirNode.isIndexed()) {
+            int index = indexOfChild(dirNode, dir);
+            if (index >= 0 && dirNode.getChildAt(index) == childNode) {
+                return index;
+            }
+        }
+        return dirNode.getIndex(childNode);
+    }
+
+    /**
+     * Finds the child by binary search - the directory children of a populated node are sorted by the model
+     * comparator and may be followed by placeholder nodes.
+     *
+     * @return Index of the child with the specified directory or -1 if there is no such child.
+     */
+    private int indexOfChild(T node, Path dir) {
+        return indexOfChild(node.getChildren(), dir);
+    }
+
+    /**
+     * @see #indexOfChild(DirNode, Path)
+     */
+    private int indexOfChild(List<T> children, Path dir) {
+        Comparator<Path> comparator = pathComparator;
+        if (comparator instanceof SortKeyComparator) {
+            comparator = withSortKey((SortKeyComparator<?>) comparator, dir); // compute the key of dir only once
+        }
+        int low = 0;
+        int high = children.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareChild(children, mid, dir, comparator);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                // the comparator may consider different directories equal (e.g. case insensitive names)
+                for (int i = mid; i >= low && compareChild(children, i, dir, comparator) == 0; i--) {
+                    if (dir.equals(children.get(i).getDirectory())) {
+                        return i;
+                    }
+                }
+                for (int i = mid + 1; i <= high && compareChild(children, i, dir, comparator) == 0; i++) {
+                    if (dir.equals(children.get(i).getDirectory())) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Comparator which compares paths to the specified directory only.
+     */
+    private static <K> Comparator<Path> withSortKey(SortKeyComparator<K> comparator, Path dir) {
+        K dirKey = comparator.getSortKey(dir);
+        return (path, ignored) -> comparator.compareKeys(comparator.getSortKey(path), dirKey);
+    }
+
+    private int compareChild(List<T> children, int index, Path dir, Comparator<Path> comparator) {
+        Path childDir = children.get(index).getDirectory();
+        return childDir != null ? comparator.compare(childDir, dir) : 1; // placeholders are the last
+    }
+
+    @Override
+    public void valueForPathChanged(TreePath path, Object newValue) {
+        // this is read-only model
+    }
+
+    @Override
+    public void addTreeModelListener(TreeModelListener l) {
+        listenerList.add(TreeModelListener.class, l);
+    }
+
+    @Override
+    public void removeTreeModelListener(TreeModelListener l) {
+        listenerList.remove(TreeModelListener.class, l);
+    }
+
+    /**
+     * @return Listeners registered via {@link #addTreeModelListener(TreeModelListener)}.
+     */
+    public TreeModelListener[] getTreeModelListeners() {
+        return listenerList.getListeners(TreeModelListener.class);
+    }
+
+    private static TreePath pathOf(TreeNode node) {
+        List<Object> nodes = new ArrayList<>();
+        for (TreeNode n = node; n != null; n = n.getParent()) {
+            nodes.add(n);
+        }
+        Collections.reverse(nodes);
+        return new TreePath(nodes.toArray());
+    }
+
+    /**
+     * Fires {@code treeNodesChanged} event for the node if it is still in the model. Must be invoked on the EDT.
+     */
+    void nodeChanged(T node) {
+        if (isAttached(node)) {
+            fireNodeChanged(node);
+        }
+    }
+
+    private void fireNodeChanged(T node) {
+        TreeNode parent = node.getParent();
+        if (parent == null) {
+            fireTreeModelEvent(new TreeModelEvent(this, pathOf(node)), TreeModelListener::treeNodesChanged);
+        } else {
+            fireTreeModelEvent(new TreeModelEvent(this, pathOf(parent), new int[]{parent.getIndex(node)},
+                    new Object[]{node}), TreeModelListener::treeNodesChanged);
+        }
+    }
+
+    private void fireTreeNodesInserted(TreePath parentPath, int[] indices, Object[] children) {
+        fireTreeModelEvent(new TreeModelEvent(this, parentPath, indices, children),
+                TreeModelListener::treeNodesInserted);
+    }
+
+    private void fireTreeNodesRemoved(TreePath parentPath, int[] indices, Object[] children) {
+        fireTreeModelEvent(new TreeModelEvent(this, parentPath, indices, children),
+                TreeModelListener::treeNodesRemoved);
+    }
+
+    private void fireTreeModelEvent(TreeModelEvent event, BiConsumer<TreeModelListener, TreeModelEvent> method) {
+        TreeModelListener[] listeners = getTreeModelListeners();
+        for (int i = listeners.length - 1; i >= 0; i--) {
+            method.accept(listeners[i], event);
+        }
     }
 }
@@ -1,8 +1,16 @@
 package org.swingk.io.dirtree;
 
 import javax.swing.JTree;
+import java.lang.reflect.Method;
 import java.nio.file.Path;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class DirTreeUtils {
 
@@ -14,6 +22,121 @@ public class DirTreeUtils {
      */
     public static final Comparator<Path> NAME_COMPARATOR = Comparator.comparing(path -> getName(path).toLowerCase());
 
+    /**
+     * Same order as {@link #NAME_COMPARATOR}, but the lower case name is computed once per path when sorting.
+     *
+     * @see #sort(List, Comparator)
+     */
+    public static final SortKeyComparator<String> NAME_ORDER =
+            SortKeyComparator.of(path -> getName(path).toLowerCase(), Comparator.naturalOrder());
+
+    /**
+     * Case insensitive order of names which compares sequences of digits numerically, e.g. 'file2' &lt; 'file10'.
+     */
+    public static final SortKeyComparator<String> NATURAL_NAME_ORDER =
+            SortKeyComparator.of(path -> getName(path).toLowerCase(), DirTreeUtils::compareNatural);
+
+    /**
+     * @param locale Locale of the names.
+     * @return Locale sensitive order of names, based on {@link CollationKey}.
+     */
+    public static SortKeyComparator<CollationKey> collationOrder(Locale locale) {
+        Collator collator = Collator.getInstance(locale);
+        return SortKeyComparator.of(path -> collator.getCollationKey(getName(path)), Comparator.naturalOrder());
+    }
+
+    /**
+     * Sorts the list of paths. If the comparator is {@link SortKeyComparator}, the sort key of each path is computed
+     * only once.
+     */
+    public static void sort(List<Path> paths, Comparator<? super Path> comparator) {
+        if (comparator instanceof SortKeyComparator && paths.size() > 1) {
+            sortByKeys(paths, (SortKeyComparator<?>) comparator);
+        } else {
+            paths.sort(comparator);
+        }
+    }
+
+    private static <K> void sortByKeys(List<Path> paths, SortKeyComparator<K> comparator) {
+        List<KeyedPath<K>> keyed = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            keyed.add(new KeyedPath<>(comparator.getSortKey(path), path));
+        }
+        keyed.sort((p1, p2) -> comparator.compareKeys(p1.key, p2.key));
+        for (int i = 0; i < keyed.size(); i++) {
+            paths.set(i, keyed.get(i).path);
+        }
+    }
+
+    private static final class KeyedPath<K> {
+        final K key;
+        final Path path;
+
+        KeyedPath(K key, Path path) {
+            this.key = key;
+            this.path = path;
+        }
+    }
+
+    /**
+     * Compares strings, treating sequences of digits as numbers.
+     */
+    static int compareNatural(String s1, String s2) {
+        int i1 = 0;
+        int i2 = 0;
+        int len1 = s1.length();
+        int len2 = s2.length();
+        while (i1 < len1 && i2 < len2) {
+            char c1 = s1.charAt(i1);
+            char c2 = s2.charAt(i2);
+            if (isDigit(c1) && isDigit(c2)) {
+                // skip leading zeros, then compare numbers by their length and digits
+                int start1 = i1;
+                int start2 = i2;
+                while (i1 < len1 && s1.charAt(i1) == '0') {
+                    i1++;
+                }
+                while (i2 < len2 && s2.charAt(i2) == '0') {
+                    i2++;
+                }
+                int digits1 = i1;
+                int digits2 = i2;
+                while (digits1 < len1 && isDigit(s1.charAt(digits1))) {
+                    digits1++;
+                }
+                while (digits2 < len2 && isDigit(s2.charAt(digits2))) {
+                    digits2++;
+                }
+                int numLen1 = digits1 - i1;
+                int numLen2 = digits2 - i2;
+                if (numLen1 != numLen2) {
+                    return numLen1 - numLen2;
+                }
+                for (; i1 < digits1; i1++, i2++) {
+                    if (s1.charAt(i1) != s2.charAt(i2)) {
+                        return s1.charAt(i1) - s2.charAt(i2);
+                    }
+                }
+                int zeros1 = digits1 - start1;
+                int zeros2 = digits2 - start2;
+                if (zeros1 != zeros2) {
+                    return zeros1 - zeros2; // equal numbers - fewer leading zeros first
+                }
+            } else {
+                if (c1 != c2) {
+                    return c1 - c2;
+                }
+                i1++;
+                i2++;
+            }
+        }
+        return (len1 - i1) - (len2 - i2);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
     /**
      * @return File name of the specified {@link Path}.
      */
@@ -23,13 +146,75 @@ public class DirTreeUtils {
     }
 
     /**
-     * Does basic configuration for {@link JTree}.
+     * Converts glob pattern of a name (see {@link DirEntryFilter#excludeGlob(String)}) to regular expression.
+     */
+    static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() + 8);
+        boolean inSet = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (inSet) {
+                if (c == ']') {
+                    inSet = false;
+                    regex.append(']');
+                } else if (c == '\\' || c == '[' || c == '&') {
+                    regex.append('\\').append(c);
+                } else {
+                    regex.append(c);
+                }
+            } else if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else if (c == '[') {
+                inSet = true;
+                regex.append('[');
+                if (i + 1 < glob.length() && glob.charAt(i + 1) == '!') {
+                    regex.append('^');
+                    i++;
+                }
+                if (i + 1 < glob.length() && glob.charAt(i + 1) == ']') {
+                    regex.append("\\]"); // leading ']' is a member of the set (POSIX)
+                    i++;
+                }
+            } else if ("\\.^$|+(){}".indexOf(c) >= 0) {
+                regex.append('\\').append(c);
+            } else {
+                regex.append(c);
+            }
+        }
+        if (inSet) {
+            throw new IllegalArgumentException("Unclosed character set: " + glob);
+        }
+        return regex.toString();
+    }
+
+    /**
+     * Creates executor suitable for background directory listing (see
+     * {@link DirTreeModel#setListingExecutor(java.util.concurrent.Executor)}).
+     *
+     * @return Executor which starts a new virtual thread for each task when running on Java 21 or later.
+     * On earlier versions - cached thread pool with daemon threads.
+     */
+    public static ExecutorService newListingExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "dir-tree-listing");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Does basic configuration for {@link JTree}. Installs listener which reports expansion state of the tree to the
+     * model (see {@link DirTreeModel#nodeExpanded(DirNode)}). Can be called again (e.g. with another model) - the
+     * listener installed before is replaced.
      */
     public static void configureTree(JTree tree, DirTreeModel<?> model) {
-        tree.clearSelection();
-        tree.setModel(model);
-        tree.expandPath(model.getFileSystemNodeTreePath());
-        tree.setRootVisible(false);
-        tree.setShowsRootHandles(true);
+        TreeSupport.configureTree(tree, model);
     }
 }
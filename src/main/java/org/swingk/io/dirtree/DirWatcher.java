@@ -0,0 +1,266 @@
+package org.swingk.io.dirtree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches directories for created or deleted entries. Uses a single {@link WatchService} (and a single thread) per
+ * filesystem. Directories of filesystems which do not support watching are polled for modification time changes by a
+ * small pool of {@value #POLL_THREADS} threads; a directory whose previous poll hasn't completed (e.g. on a hung
+ * filesystem) is skipped, so it can't occupy more than one thread.
+ * Bursts of changes in a directory are coalesced - the listener is notified once the directory has been quiet for the
+ * debounce delay, but at most {@value #MAX_DEBOUNCE_FACTOR} times the delay after the first change of the burst.
+ */
+final class DirWatcher implements Closeable {
+
+    static final long DEFAULT_DEBOUNCE_MILLIS = 300;
+    static final long DEFAULT_POLL_MILLIS = 5_000;
+    static final int MAX_DEBOUNCE_FACTOR = 10;
+    static final int POLL_THREADS = 4;
+
+    private final Consumer<Path> listener;
+    private final long debounceMillis;
+    private final long pollMillis;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService pollExecutor;
+    private final Map<FileSystem, Optional<WatchService>> services = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> keys = new ConcurrentHashMap<>();
+    private final Map<Path, FileTime> polled = new ConcurrentHashMap<>();
+    private final Set<Path> polling = ConcurrentHashMap.newKeySet(); // being polled
+    private final Map<Path, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+    private final Map<Path, Burst> bursts = new ConcurrentHashMap<>();
+    private ScheduledFuture<?> pollTask;
+    private volatile boolean closed;
+
+    /**
+     * @param listener Receives directories which have changed. Invoked on the watcher thread.
+     */
+    DirWatcher(Consumer<Path> listener, long debounceMillis, long pollMillis) {
+        this.listener = listener;
+        this.debounceMillis = debounceMillis;
+        this.pollMillis = pollMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> newDaemonThread(r, "dir-tree-watcher"));
+        ThreadPoolExecutor pollExecutor = new ThreadPoolExecutor(POLL_THREADS, POLL_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> newDaemonThread(r, "dir-tree-poll"));
+        pollExecutor.allowCoreThreadTimeOut(true);
+        this.pollExecutor = pollExecutor;
+    }
+
+    private static Thread newDaemonThread(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    /**
+     * Starts watching of the directory. Does nothing if the directory is already watched.
+     */
+    void watch(Path dir) {
+        if (closed || keys.containsKey(dir) || polled.containsKey(dir)) {
+            return;
+        }
+        Optional<WatchService> service = services.computeIfAbsent(dir.getFileSystem(), this::newWatchService);
+        if (service.isPresent()) {
+            try {
+                keys.put(dir, dir.register(service.get(), StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE));
+                return;
+            } catch (IOException | UnsupportedOperationException | ClosedWatchServiceException e) {
+                // fall back to polling
+            }
+        }
+        startPolling(dir);
+    }
+
+    /**
+     * Stops watching of the directory.
+     */
+    void unwatch(Path dir) {
+        WatchKey key = keys.remove(dir);
+        if (key != null) {
+            key.cancel();
+        }
+        polled.remove(dir);
+        bursts.remove(dir);
+        ScheduledFuture<?> task = pending.remove(dir);
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    boolean isWatched(Path dir) {
+        return keys.containsKey(dir) || polled.containsKey(dir);
+    }
+
+    int getWatchedCount() {
+        return keys.size() + polled.size();
+    }
+
+    private Optional<WatchService> newWatchService(FileSystem fs) {
+        WatchService service;
+        try {
+            service = fs.newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            return Optional.empty();
+        }
+        newDaemonThread(() -> processEvents(service), "dir-tree-watch-service").start();
+        return Optional.of(service);
+    }
+
+    private void processEvents(WatchService service) {
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = (Path) key.watchable();
+            key.pollEvents(); // the events are coalesced - the directory will be listed again
+            if (!key.reset()) {
+                keys.remove(dir, key); // the directory is no longer accessible
+            }
+            scheduleChanged(dir);
+        }
+    }
+
+    private synchronized void startPolling(Path dir) {
+        FileTime modified;
+        try {
+            modified = Files.getLastModifiedTime(dir);
+        } catch (IOException e) {
+            return;
+        }
+        polled.put(dir, modified);
+        if (pollTask == null) {
+            pollTask = scheduler.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Polls the directories on the poll pool. A directory whose previous poll is still queued or running is skipped,
+     * so the queue holds each directory at most once.
+     */
+    private void poll() {
+        polled.forEach((dir, modified) -> {
+            if (polling.add(dir)) {
+                pollExecutor.execute(() -> {
+                    try {
+                        poll(dir, modified);
+                    } finally {
+                        polling.remove(dir);
+                    }
+                });
+            }
+        });
+    }
+
+    private void poll(Path dir, FileTime modified) {
+        FileTime current;
+        try {
+            current = Files.getLastModifiedTime(dir);
+        } catch (IOException e) {
+            polled.remove(dir); // the directory is no longer accessible
+            scheduleChanged(dir);
+            return;
+        }
+        if (!current.equals(modified) && polled.replace(dir, modified, current)) {
+            scheduleChanged(dir);
+        }
+    }
+
+    private void scheduleChanged(Path dir) {
+        if (closed) {
+            return;
+        }
+        long now = System.nanoTime();
+        bursts.compute(dir, (d, burst) -> burst != null ? burst.changed(now) : new Burst(now));
+        pending.computeIfAbsent(dir, d -> schedule(d, TimeUnit.MILLISECONDS.toNanos(debounceMillis)));
+    }
+
+    private ScheduledFuture<?> schedule(Path dir, long delayNanos) {
+        return scheduler.schedule(() -> notifyIfQuiet(dir), delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Notifies the listener if the directory hasn't changed for the debounce delay (or the burst is too long),
+     * otherwise waits for the rest of the delay.
+     */
+    private void notifyIfQuiet(Path dir) {
+        Burst burst = bursts.get(dir);
+        if (burst != null) {
+            long delay = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+            long now = System.nanoTime();
+            long remaining = Math.min(burst.last + delay, burst.first + delay * MAX_DEBOUNCE_FACTOR) - now;
+            if (remaining > 0) {
+                pending.put(dir, schedule(dir, remaining));
+                return;
+            }
+            bursts.remove(dir, burst);
+        }
+        pending.remove(dir);
+        listener.accept(dir);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdownNow();
+        pollExecutor.shutdownNow();
+        for (Optional<WatchService> service : services.values()) {
+            if (service.isPresent()) {
+                try {
+                    service.get().close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+        services.clear();
+        keys.clear();
+        polled.clear();
+        pending.clear();
+        bursts.clear();
+    }
+
+    /**
+     * Times ({@link System#nanoTime()}) of the first and the last change of a burst.
+     */
+    private static final class Burst {
+        final long first;
+        final long last;
+
+        Burst(long time) {
+            this(time, time);
+        }
+
+        private Burst(long first, long last) {
+            this.first = first;
+            this.last = last;
+        }
+
+        Burst changed(long time) {
+            return new Burst(first, time);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.swingk.io.dirtree;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.nio.file.Path;
+
+/**
+ * JDK Flight Recorder events of the model. The event classes are loaded only when {@code jdk.jfr} module is
+ * available, so the methods accept and return events as {@link Object}. Being a static dependency, the module isn't
+ * resolved on behalf of this module: a modular application needs {@code --add-modules jdk.jfr} to record the events.
+ */
+final class Jfr {
+    private static final boolean AVAILABLE = isAvailable();
+
+    private Jfr() {
+    }
+
+    private static boolean isAvailable() {
+        // jdk.jfr is an optional ('requires static') dependency of the module
+        ModuleLayer layer = Jfr.class.getModule().getLayer();
+        return (layer != null ? layer : ModuleLayer.boot()).findModule("jdk.jfr").isPresent();
+    }
+
+    /**
+     * @return Started listing event or {@code null} if the event is not recorded.
+     */
+    static Object beginListing() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        ListingEvent event = new ListingEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void commitListing(Object event, Path directory, ListingStats stats, boolean fromSnapshot) {
+        if (event != null) {
+            ListingEvent e = (ListingEvent) event;
+            e.end();
+            if (e.shouldCommit()) {
+                e.directory = directory.toString();
+                e.entries = stats.entries;
+                e.accepted = stats.accepted;
+                e.attributeReads = stats.attributeReads;
+                e.fromSnapshot = fromSnapshot;
+                e.commit();
+            }
+        }
+    }
+
+    /**
+     * @return Started leaf probe event or {@code null} if the event is not recorded.
+     */
+    static Object beginLeafProbe() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        LeafProbeEvent event = new LeafProbeEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void commitLeafProbe(Object event, Path directory, boolean leaf) {
+        if (event != null) {
+            LeafProbeEvent e = (LeafProbeEvent) event;
+            e.end();
+            if (e.shouldCommit()) {
+                e.directory = directory.toString();
+                e.leaf = leaf;
+                e.commit();
+            }
+        }
+    }
+
+    @Name("org.swingk.io.dirtree.Listing")
+    @Label("Directory Listing")
+    @Category("Directory Tree")
+    @Description("Listing of subdirectories by the directory tree model")
+    static final class ListingEvent extends Event {
+        @Label("Directory")
+        String directory;
+
+        @Label("Entries")
+        @Description("Number of examined directory entries")
+        int entries;
+
+        @Label("Accepted")
+        @Description("Number of subdirectories accepted by the filter")
+        int accepted;
+
+        @Label("Attribute Reads")
+        int attributeReads;
+
+        @Label("From Snapshot")
+        boolean fromSnapshot;
+    }
+
+    @Name("org.swingk.io.dirtree.LeafProbe")
+    @Label("Leaf Probe")
+    @Category("Directory Tree")
+    @Description("Check whether a directory has subdirectories")
+    static final class LeafProbeEvent extends Event {
+        @Label("Directory")
+        String directory;
+
+        @Label("Leaf")
+        boolean leaf;
+    }
+}
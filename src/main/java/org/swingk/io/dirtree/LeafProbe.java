@@ -0,0 +1,75 @@
+package org.swingk.io.dirtree;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Strategy to determine whether a directory which is not listed yet is a leaf node of {@link DirTreeModel} (i.e. has
+ * no subdirectories accepted by the model filter). The result of the probe is cached by the model until the directory
+ * is listed, at which point the leaf status is corrected if the probe was wrong.
+ *
+ * @see DirTreeModel#setLeafProbe(LeafProbe)
+ */
+@FunctionalInterface
+public interface LeafProbe {
+
+    /**
+     * @param directory Directory to check.
+     * @param filter Filter of the model.
+     * @return {@code true} if the directory should be displayed as a leaf.
+     * @throws IOException If the directory cannot be accessed. The directory will be displayed as a leaf.
+     */
+    boolean isLeaf(Path directory, DirectoryStream.Filter<Path> filter) throws IOException;
+
+    /**
+     * @return Probe which lists the directory until it finds the first accepted subdirectory. Always correct, but
+     * lists the whole directory when it has no subdirectories. Default probe of the model.
+     */
+    static LeafProbe exact() {
+        return (directory, filter) -> !new DirLister(filter).hasChildren(directory);
+    }
+
+    /**
+     * @param maxEntries Maximal number of directory entries (files or directories) to examine.
+     * @return Probe which lists the directory until it finds the first accepted subdirectory, but examines at most
+     * {@code maxEntries} entries. If no subdirectory was found among them, the directory is optimistically reported as
+     * non-leaf.
+     */
+    static LeafProbe bounded(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Negative max. entries: " + maxEntries);
+        }
+        return (directory, filter) -> Boolean.FALSE.equals(new DirLister(filter).hasChildren(directory, maxEntries));
+    }
+
+    /**
+     * Probe which checks the directory link count ({@code unix:nlink} attribute) without listing it. On most POSIX
+     * filesystems a directory has link count of 2 plus the number of its subdirectories, so:
+     * <ul>
+     * <li>link count greater than 2 - the directory is reported as non-leaf (optimistically - the subdirectories may
+     * be rejected by the filter);</li>
+     * <li>link count 2 - the directory is reported as leaf (optimistically - symbolic links to directories are not
+     * counted);</li>
+     * <li>otherwise (e.g. 'unix' attribute view is not supported or the filesystem doesn't count subdirectory links)
+     * - the fallback probe is used.</li>
+     * </ul>
+     *
+     * @param fallback Probe to use when the link count is not available or meaningless.
+     */
+    static LeafProbe linkCount(LeafProbe fallback) {
+        requireNonNull(fallback);
+        return (directory, filter) -> {
+            if (directory.getFileSystem().supportedFileAttributeViews().contains("unix")) {
+                int linkCount = (Integer) Files.getAttribute(directory, "unix:nlink");
+                if (linkCount >= 2) {
+                    return linkCount == 2;
+                }
+            }
+            return fallback.isLeaf(directory, filter);
+        };
+    }
+}
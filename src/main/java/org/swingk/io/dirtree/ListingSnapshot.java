@@ -0,0 +1,252 @@
+package org.swingk.io.dirtree;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Persistent cache of directory listings which allows to display previously listed directories without listing them
+ * again (e.g. after restart of the application). For each directory it stores the names of the subdirectories, their
+ * leaf status and the last modified time of the directory. The cached listing is used only while the last modified
+ * time of the directory is unchanged and only by a model which shows the same hidden and system directories as the
+ * model which has written it. The name stage of the model's {@link DirEntryFilter} is applied to the cached listing
+ * again, but a listing written with a stricter filter lacks the directories which that filter rejected - use a
+ * separate snapshot file for each configuration of the filter.
+ * <p>
+ * The leaf statuses of the subdirectories are hints: a subdirectory may have got its own subdirectories since the
+ * snapshot was written without changing the last modified time of its parent, so only the hints that a subdirectory
+ * is not a leaf are used (optimistically - the subdirectory is listed when expanded anyway).
+ * <p>
+ * The snapshot file is read into memory (it's not kept open, so that {@link #save()} can replace it on any platform)
+ * and the listings are decoded on demand. The file is written by {@link #save()} and contains the directories listed
+ * or looked up since the snapshot was opened.
+ * Thread safe.
+ *
+ * @see DirTreeModel#setListingSnapshot(ListingSnapshot)
+ */
+public final class ListingSnapshot {
+    private static final int MAGIC = 0x44545332; // DTS2
+    private static final int MAGIC_V1 = 0x44545331; // DTS1 - without the filters, ignored
+    private static final byte LEAF_UNKNOWN = 0;
+    private static final byte LEAF = 1;
+    private static final byte NOT_LEAF = 2;
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final Map<String, Integer> offsets;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Path, Boolean> leafHints = new ConcurrentHashMap<>();
+
+    private ListingSnapshot(Path file, ByteBuffer buffer, Map<String, Integer> offsets) {
+        this.file = file;
+        this.buffer = buffer;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Opens the snapshot file. If the file doesn't exist, the snapshot is empty.
+     *
+     * @param file Snapshot file.
+     * @return Snapshot.
+     * @throws IOException If the file can't be read or has invalid format.
+     */
+    public static ListingSnapshot open(Path file) throws IOException {
+        requireNonNull(file);
+        if (!Files.exists(file)) {
+            return new ListingSnapshot(file, ByteBuffer.allocate(0), Collections.emptyMap());
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        Map<String, Integer> offsets = new HashMap<>();
+        try {
+            int magic = buffer.getInt();
+            if (magic == MAGIC_V1) {
+                return new ListingSnapshot(file, ByteBuffer.allocate(0), Collections.emptyMap());
+            }
+            if (magic != MAGIC) {
+                throw new IOException("Not a listing snapshot: " + file);
+            }
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                String directory = readString(buffer);
+                offsets.put(directory, buffer.position());
+                buffer.position(buffer.position() + Long.BYTES + 1 + Integer.BYTES);
+                buffer.position(buffer.position() + Integer.BYTES + buffer.getInt(buffer.position()));
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupted listing snapshot: " + file, e);
+        }
+        return new ListingSnapshot(file, buffer, offsets);
+    }
+
+    /**
+     * @return Snapshot file.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @param directory Directory.
+     * @param lastModified Current last modified time of the directory.
+     * @param filter Built-in filter of the listing (see {@link DirFilter#getSnapshotKey()}).
+     * @return Subdirectories of the directory or {@code null} if the directory is not in the snapshot, has been
+     * modified or was listed with another filter.
+     */
+    List<Path> getChildren(Path directory, FileTime lastModified, byte filter) {
+        String key = directory.toString();
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            Integer offset = offsets.get(key);
+            if (offset == null) {
+                return null;
+            }
+            entry = decode(offset);
+            entries.putIfAbsent(key, entry);
+        }
+        if (entry.lastModified != toMicros(lastModified) || entry.filter != filter) {
+            return null;
+        }
+        List<Path> children = new ArrayList<>(entry.names.length);
+        for (int i = 0; i < entry.names.length; i++) {
+            Path child = directory.resolve(entry.names[i]);
+            children.add(child);
+            if (entry.leaf[i] != LEAF_UNKNOWN) {
+                leafHints.putIfAbsent(child, entry.leaf[i] == LEAF);
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Stores new listing of the directory.
+     */
+    void putChildren(Path directory, FileTime lastModified, byte filter, List<Path> children) {
+        String[] names = new String[children.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = DirTreeUtils.getName(children.get(i));
+        }
+        entries.put(directory.toString(), new Entry(toMicros(lastModified), filter, names, new byte[names.length]));
+        leafHints.put(directory, names.length == 0);
+    }
+
+    /**
+     * @return Leaf status of the directory as stored in the snapshot or {@code null} if unknown. A stored status
+     * that the directory is a leaf may be stale (see the class description).
+     */
+    Boolean isLeaf(Path directory) {
+        return leafHints.get(directory);
+    }
+
+    /**
+     * Stores leaf status of the directory.
+     */
+    void putLeaf(Path directory, boolean leaf) {
+        leafHints.put(directory, leaf);
+    }
+
+    /**
+     * Writes the snapshot file. The file is replaced atomically where supported.
+     *
+     * @throws IOException If the file can't be written.
+     */
+    public void save() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            Map<String, Entry> snapshot = new HashMap<>(entries);
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+                    Entry entry = e.getValue();
+                    writeString(out, e.getKey());
+                    out.writeLong(entry.lastModified);
+                    out.writeByte(entry.filter);
+                    out.writeInt(entry.names.length);
+                    byte[][] names = new byte[entry.names.length][];
+                    int size = 0;
+                    for (int i = 0; i < names.length; i++) {
+                        names[i] = entry.names[i].getBytes(StandardCharsets.UTF_8);
+                        size += Integer.BYTES + names[i].length + 1;
+                    }
+                    out.writeInt(size);
+                    Path directory = file.getFileSystem().getPath(e.getKey());
+                    for (int i = 0; i < names.length; i++) {
+                        out.writeInt(names[i].length);
+                        out.write(names[i]);
+                        Boolean leaf = leafHints.get(directory.resolve(entry.names[i]));
+                        out.writeByte(leaf == null ? entry.leaf[i] : leaf ? LEAF : NOT_LEAF);
+                    }
+                }
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Entry decode(int offset) {
+        ByteBuffer b = buffer.duplicate();
+        b.position(offset);
+        long lastModified = b.getLong();
+        byte filter = b.get();
+        int count = b.getInt();
+        b.getInt(); // size of the names
+        String[] names = new String[count];
+        byte[] leaf = new byte[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = readString(b);
+            leaf[i] = b.get();
+        }
+        return new Entry(lastModified, filter, names, leaf);
+    }
+
+    private static String readString(ByteBuffer b) {
+        byte[] bytes = new byte[b.getInt()];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static long toMicros(FileTime time) {
+        return time.to(TimeUnit.MICROSECONDS);
+    }
+
+    private static final class Entry {
+        final long lastModified;
+        final byte filter;
+        final String[] names;
+        final byte[] leaf;
+
+        Entry(long lastModified, byte filter, String[] names, byte[] leaf) {
+            this.lastModified = lastModified;
+            this.filter = filter;
+            this.names = names;
+            this.leaf = leaf;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.swingk.io.dirtree;
+
+/**
+ * Statistics of a single directory listing.
+ *
+ * @see DirLister#list(java.nio.file.Path, ListingStats)
+ */
+final class ListingStats {
+    /**
+     * Number of examined directory entries.
+     */
+    int entries;
+
+    /**
+     * Number of accepted subdirectories.
+     */
+    int accepted;
+
+    /**
+     * Number of file attribute reads (system calls) required by the filter. For filters other than
+     * {@link DirFilter} - upper estimate.
+     */
+    int attributeReads;
+}
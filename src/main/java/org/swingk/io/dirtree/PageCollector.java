@@ -0,0 +1,112 @@
+package org.swingk.io.dirtree;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Collects the first paths in the page order (the order of the comparator with ties broken by
+ * {@link Path#compareTo(Path)}) which follow the specified path, without sorting all the paths: only a bounded heap
+ * of the selected paths is kept. The sort key of each path is computed once.
+ *
+ * @param <K> Type of the sort key.
+ * @see DirTreeModel#setPageSize(int)
+ */
+final class PageCollector<K> implements Predicate<Path> {
+    private final SortKeyComparator<K> comparator;
+    private final Entry<K> after;
+    private final Entry<K> until;
+    private final int limit;
+    private final PriorityQueue<Entry<K>> heap; // the last selected path at the head
+    private boolean more;
+
+    /**
+     * @param after Only the paths following this one are collected. {@code null} to collect from the first path.
+     * @param until Only the paths up to this one (inclusive) are collected. {@code null} - no limit.
+     * @param limit Max. number of paths to collect.
+     */
+    PageCollector(SortKeyComparator<K> comparator, Path after, Path until, int limit) {
+        this.comparator = comparator;
+        this.after = after != null ? new Entry<>(comparator.getSortKey(after), after) : null;
+        this.until = until != null ? new Entry<>(comparator.getSortKey(until), until) : null;
+        this.limit = limit;
+        this.heap = new PriorityQueue<>(Math.min(limit, 1024), this::compareDescending);
+    }
+
+    /**
+     * Creates collector for any comparator.
+     */
+    @SuppressWarnings("unchecked")
+    static PageCollector<?> create(Comparator<? super Path> comparator, Path after, Path until, int limit) {
+        SortKeyComparator<?> keyComparator = comparator instanceof SortKeyComparator ?
+                (SortKeyComparator<?>) comparator : SortKeyComparator.of(path -> path, comparator);
+        return new PageCollector<>(keyComparator, after, until, limit);
+    }
+
+    /**
+     * Offers the path to the collector.
+     *
+     * @return Always {@code true}, i.e. continue listing.
+     */
+    @Override
+    public boolean test(Path path) {
+        Entry<K> entry = new Entry<>(comparator.getSortKey(path), path);
+        if (after != null && compare(entry, after) <= 0) {
+            return true;
+        }
+        if (until != null && compare(entry, until) > 0) {
+            more = true;
+            return true;
+        }
+        if (heap.size() < limit) {
+            heap.add(entry);
+        } else {
+            more = true;
+            if (compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code true} if some paths following the collected ones were not collected.
+     */
+    boolean hasMore() {
+        return more;
+    }
+
+    /**
+     * @return Collected paths in the page order.
+     */
+    List<Path> getPaths() {
+        List<Entry<K>> entries = new ArrayList<>(heap);
+        entries.sort(this::compare);
+        List<Path> paths = new ArrayList<>(entries.size());
+        entries.forEach(entry -> paths.add(entry.path));
+        return paths;
+    }
+
+    private int compare(Entry<K> e1, Entry<K> e2) {
+        int result = comparator.compareKeys(e1.key, e2.key);
+        return result != 0 ? result : e1.path.compareTo(e2.path);
+    }
+
+    private int compareDescending(Entry<K> e1, Entry<K> e2) {
+        return compare(e2, e1);
+    }
+
+    private static final class Entry<K> {
+        final K key;
+        final Path path;
+
+        Entry(K key, Path path) {
+            this.key = key;
+            this.path = path;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.swingk.io.dirtree;
+
+/**
+ * Kinds of placeholder nodes - auxiliary nodes which {@link DirTreeModel} temporarily shows instead of (or in addition
+ * to) the directory nodes.
+ *
+ * @see DirNodeFactory#createPlaceholderNode(PlaceholderKind)
+ * @see DirNode#getPlaceholderKind()
+ */
+public enum PlaceholderKind {
+    /**
+     * The only child of a directory node whose children are being listed in background.
+     */
+    LOADING("Loading..."),
+
+    /**
+     * The last child of a directory node whose children are shown in pages (see
+     * {@link DirTreeModel#setPageSize(int)}). Expanding the placeholder loads the next page.
+     */
+    MORE("More..."),
+
+    /**
+     * The last child of a directory node whose listing has exceeded the deadline (see
+     * {@link DirTreeModel#setListingTimeout(long)}), e.g. on a hung network filesystem. Expanding the placeholder lists
+     * the directory again.
+     */
+    TIMED_OUT("Timed out - expand to retry");
+
+    private final String text;
+
+    PlaceholderKind(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @return Default text to display for the placeholder node.
+     */
+    public String getText() {
+        return text;
+    }
+}
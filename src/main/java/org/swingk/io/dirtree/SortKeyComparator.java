@@ -0,0 +1,55 @@
+package org.swingk.io.dirtree;
+
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Comparator of paths which compares their precomputed sort keys. When sorting via
+ * {@link DirTreeUtils#sort(java.util.List, Comparator)} (as {@link DirTreeModel} does), the key is computed once per
+ * path rather than twice per comparison.
+ *
+ * @param <K> Type of the sort key.
+ * @see DirTreeUtils#NAME_ORDER
+ */
+public interface SortKeyComparator<K> extends Comparator<Path> {
+
+    /**
+     * @return Sort key of the path.
+     */
+    K getSortKey(Path path);
+
+    /**
+     * Compares sort keys of two paths.
+     */
+    int compareKeys(K key1, K key2);
+
+    @Override
+    default int compare(Path path1, Path path2) {
+        return compareKeys(getSortKey(path1), getSortKey(path2));
+    }
+
+    /**
+     * @param keyExtractor Function to compute the sort key of a path.
+     * @param keyComparator Comparator of the sort keys.
+     * @return New comparator.
+     */
+    static <K> SortKeyComparator<K> of(Function<? super Path, ? extends K> keyExtractor,
+                                       Comparator<? super K> keyComparator) {
+        requireNonNull(keyExtractor);
+        requireNonNull(keyComparator);
+        return new SortKeyComparator<>() {
+            @Override
+            public K getSortKey(Path path) {
+                return keyExtractor.apply(path);
+            }
+
+            @Override
+            public int compareKeys(K key1, K key2) {
+                return keyComparator.compare(key1, key2);
+            }
+        };
+    }
+}
@@ -0,0 +1,69 @@
+package org.swingk.io.dirtree;
+
+import javax.swing.JTree;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeExpansionListener;
+
+/**
+ * Swing part of {@link DirTreeUtils}. Separate class, so that the headless part of the library (e.g.
+ * {@link DirHierarchy}) doesn't load Swing classes when it uses {@link DirTreeUtils}.
+ */
+final class TreeSupport {
+
+    private TreeSupport() {
+    }
+
+    /**
+     * @see DirTreeUtils#configureTree(JTree, DirTreeModel)
+     */
+    static void configureTree(JTree tree, DirTreeModel<?> model) {
+        tree.clearSelection();
+        tree.setModel(model);
+        trackExpansion(tree, model);
+        tree.expandPath(model.getFileSystemNodeTreePath());
+        tree.setRootVisible(false);
+        tree.setShowsRootHandles(true);
+    }
+
+    /**
+     * Installs listener which reports expansion state of the tree to the model, replacing the one installed by the
+     * previous configuration of the tree (if any).
+     */
+    private static <T extends DirNode<T>> void trackExpansion(JTree tree, DirTreeModel<T> model) {
+        for (TreeExpansionListener listener : tree.getTreeExpansionListeners()) {
+            if (listener instanceof ExpansionTracker) {
+                tree.removeTreeExpansionListener(listener);
+            }
+        }
+        tree.addTreeExpansionListener(new ExpansionTracker<>(tree, model));
+    }
+
+    private static final class ExpansionTracker<T extends DirNode<T>> implements TreeExpansionListener {
+        private final JTree tree;
+        private final DirTreeModel<T> model;
+
+        ExpansionTracker(JTree tree, DirTreeModel<T> model) {
+            this.tree = tree;
+            this.model = model;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T nodeOf(TreeExpansionEvent event) {
+            return (T) event.getPath().getLastPathComponent(); // the tree displays the model (checked by the caller)
+        }
+
+        @Override
+        public void treeExpanded(TreeExpansionEvent event) {
+            if (tree.getModel() == model) {
+                model.nodeExpanded(nodeOf(event));
+            }
+        }
+
+        @Override
+        public void treeCollapsed(TreeExpansionEvent event) {
+            if (tree.getModel() == model) {
+                model.nodeCollapsed(nodeOf(event));
+            }
+        }
+    }
+}
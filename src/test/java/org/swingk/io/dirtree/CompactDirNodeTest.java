@@ -0,0 +1,73 @@
+package org.swingk.io.dirtree;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+public class CompactDirNodeTest {
+    @Test
+    public void structure() {
+        var factory = new CompactNodeFactory();
+        CompactDirNode root = factory.createRootNode();
+        CompactDirNode fsNode = factory.createFileSystemNode(FileSystems.getDefault());
+        root.add(fsNode);
+        Path fsRoot = FileSystems.getDefault().getRootDirectories().iterator().next();
+        CompactDirNode fsRootNode = factory.createDirectoryNode(fsRoot, true);
+        fsNode.add(fsRootNode);
+        Path a = fsRoot.resolve("a");
+        CompactDirNode aNode = factory.createDirectoryNode(a, false);
+        fsRootNode.add(aNode);
+        CompactDirNode cNode = factory.createDirectoryNode(a.resolve("c"), false);
+        CompactDirNode dNode = factory.createDirectoryNode(a.resolve("d"), false);
+        aNode.addAll(List.of(cNode, dNode));
+        CompactDirNode bNode = factory.createDirectoryNode(a.resolve("b"), false);
+        aNode.insert(bNode, 0);
+
+        Assertions.assertNull(root.getDirectory());
+        Assertions.assertNull(fsNode.getDirectory());
+        Assertions.assertSame(FileSystems.getDefault(), fsNode.getFileSystem());
+        Assertions.assertEquals(fsRoot, fsRootNode.getDirectory());
+        Assertions.assertEquals(a, aNode.getDirectory());
+        Assertions.assertEquals(a.resolve("c"), cNode.getDirectory());
+        Assertions.assertEquals("c", cNode.toString());
+        Assertions.assertSame(aNode, cNode.getParent());
+        Assertions.assertEquals(3, aNode.getChildCount());
+        Assertions.assertEquals(List.of(bNode, cNode, dNode), Collections.list(aNode.children()));
+        Assertions.assertEquals(0, aNode.getIndex(bNode));
+        Assertions.assertEquals(2, aNode.getIndex(dNode));
+        Assertions.assertEquals(-1, aNode.getIndex(aNode));
+
+        aNode.remove(1);
+        Assertions.assertNull(cNode.getParent());
+        Assertions.assertEquals(-1, aNode.getIndex(cNode));
+        Assertions.assertEquals(1, aNode.getIndex(dNode));
+        Assertions.assertSame(dNode, aNode.getChildAt(1));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> aNode.getChildAt(2));
+
+        CompactDirNode placeholder = factory.createPlaceholderNode(PlaceholderKind.LOADING);
+        Assertions.assertEquals(PlaceholderKind.LOADING, placeholder.getPlaceholderKind());
+        Assertions.assertFalse(placeholder.getAllowsChildren());
+        Assertions.assertNull(placeholder.getDirectory());
+    }
+
+    @Test
+    public void model(@TempDir Path dir) throws Exception {
+        Files.createDirectory(dir.resolve("b"));
+        Files.createDirectory(dir.resolve("a"));
+
+        var model = new DirTreeModel<>(new CompactNodeFactory());
+        CompactDirNode dirNode = (CompactDirNode) model.getTreePath(dir).orElseThrow().getLastPathComponent();
+        Assertions.assertEquals(dir, dirNode.getDirectory());
+        Assertions.assertEquals(2, model.getChildCount(dirNode));
+        Assertions.assertEquals(dir.resolve("a"), model.getChild(dirNode, 0).getDirectory());
+        Assertions.assertEquals(1, model.getIndexOfChild(dirNode, model.getChild(dirNode, 1)));
+        Assertions.assertEquals(model.getTreePath(dir.resolve("b")).orElseThrow().getLastPathComponent(),
+                model.getChild(dirNode, 1));
+    }
+}
@@ -0,0 +1,190 @@
+package org.swingk.io.dirtree;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.swing.tree.TreePath;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConcurrentDirNodeTest {
+    @Test
+    public void structure() {
+        var factory = new ConcurrentNodeFactory();
+        ConcurrentDirNode root = factory.createRootNode();
+        ConcurrentDirNode fsNode = factory.createFileSystemNode(FileSystems.getDefault());
+        root.add(fsNode);
+        Path fsRoot = FileSystems.getDefault().getRootDirectories().iterator().next();
+        ConcurrentDirNode aNode = factory.createDirectoryNode(fsRoot.resolve("a"), false);
+        fsNode.add(aNode);
+        ConcurrentDirNode bNode = factory.createDirectoryNode(fsRoot.resolve("a").resolve("b"), false);
+        ConcurrentDirNode dNode = factory.createDirectoryNode(fsRoot.resolve("a").resolve("d"), false);
+        aNode.addAll(List.of(bNode, dNode));
+        List<ConcurrentDirNode> snapshot = aNode.getChildren();
+        ConcurrentDirNode cNode = factory.createDirectoryNode(fsRoot.resolve("a").resolve("c"), false);
+        aNode.insert(cNode, 1);
+
+        Assertions.assertEquals(List.of(bNode, dNode), snapshot); // not affected by the modification
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.remove(0));
+        Assertions.assertEquals(List.of(bNode, cNode, dNode), Collections.list(aNode.children()));
+        Assertions.assertEquals(2, aNode.getIndex(dNode));
+        Assertions.assertSame(aNode, cNode.getParent());
+        Assertions.assertEquals(fsRoot.resolve("a").resolve("c"), cNode.getDirectory());
+        Assertions.assertEquals("c", cNode.toString());
+        Assertions.assertSame(FileSystems.getDefault(), fsNode.getFileSystem());
+
+        aNode.remove(0);
+        Assertions.assertNull(bNode.getParent());
+        Assertions.assertEquals(-1, aNode.getIndex(bNode));
+        Assertions.assertEquals(1, aNode.getIndex(dNode));
+        aNode.removeAllChildren();
+        Assertions.assertEquals(0, aNode.getChildCount());
+        Assertions.assertNull(dNode.getParent());
+        Assertions.assertTrue(aNode.isLeaf());
+    }
+
+    /**
+     * Readers resolve paths on several threads while a single writer creates and deletes subdirectories and refreshes
+     * the nodes.
+     */
+    @Test
+    public void concurrentReads(@TempDir Path dir) throws Exception {
+        final int dirs = 8;
+        for (int i = 0; i < dirs; i++) {
+            for (int j = 0; j < dirs; j++) {
+                Files.createDirectories(dir.resolve("d" + i).resolve("s" + j));
+            }
+        }
+        var model = new DirTreeModel<>(new ConcurrentNodeFactory());
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger reads = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    while (!stop.get()) {
+                        Path target = dir.resolve("d" + random.nextInt(dirs)).resolve("s" + random.nextInt(dirs));
+                        TreePath path = model.getTreePath(target).orElseThrow(() -> new AssertionError(target));
+                        var node = (ConcurrentDirNode) path.getLastPathComponent();
+                        Assertions.assertEquals(target, node.getDirectory());
+                        var parent = (ConcurrentDirNode) path.getParentPath().getLastPathComponent();
+                        Assertions.assertTrue(parent.getIndex(node) >= 0);
+                        List<ConcurrentDirNode> children = parent.getChildren();
+                        for (int i = 1; i < children.size(); i++) {
+                            Assertions.assertTrue(DirTreeUtils.NAME_ORDER.compare(children.get(i - 1).getDirectory(),
+                                    children.get(i).getDirectory()) < 0);
+                        }
+                        reads.incrementAndGet();
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            try {
+                while (!stop.get()) {
+                    Path parent = dir.resolve("d" + random.nextInt(dirs));
+                    Path extra = parent.resolve("x" + random.nextInt(4));
+                    if (Files.exists(extra)) {
+                        Files.delete(extra);
+                    } else {
+                        Files.createDirectory(extra);
+                    }
+                    model.refresh((ConcurrentDirNode) model.getTreePath(parent).orElseThrow().getLastPathComponent());
+                }
+            } catch (Throwable e) {
+                errors.add(e);
+            }
+        }));
+        threads.forEach(Thread::start);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(1));
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertEquals(List.of(), new ArrayList<>(errors));
+        Assertions.assertTrue(reads.get() > 0);
+    }
+
+    /**
+     * Readers read the children of a node on several threads while a single writer reverses their order by refreshing
+     * the node with the toggled comparator.
+     */
+    @Test
+    public void concurrentReorder(@TempDir Path dir) throws Exception {
+        final int dirs = 8;
+        for (int i = 0; i < dirs; i++) {
+            Files.createDirectory(dir.resolve("d" + i));
+        }
+        AtomicBoolean reversed = new AtomicBoolean();
+        Comparator<Path> comparator = (p1, p2) -> reversed.get() ?
+                DirTreeUtils.NAME_ORDER.compare(p2, p1) : DirTreeUtils.NAME_ORDER.compare(p1, p2);
+        var model = new DirTreeModel<>(comparator, false, false, new ConcurrentNodeFactory());
+        var dirNode = (ConcurrentDirNode) model.getTreePath(dir).orElseThrow().getLastPathComponent();
+        Assertions.assertEquals(dirs, model.getChildCount(dirNode));
+        List<ConcurrentDirNode> initial = dirNode.getChildren();
+
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger reads = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    while (!stop.get()) {
+                        List<ConcurrentDirNode> children = dirNode.getChildren();
+                        Assertions.assertEquals(dirs, children.size());
+                        int order = Integer.signum(DirTreeUtils.NAME_ORDER.compare(children.get(0).getDirectory(),
+                                children.get(1).getDirectory()));
+                        for (int i = 1; i < children.size(); i++) {
+                            Assertions.assertEquals(order, Integer.signum(DirTreeUtils.NAME_ORDER.compare(
+                                    children.get(i - 1).getDirectory(), children.get(i).getDirectory())));
+                        }
+                        ConcurrentDirNode child = initial.get(random.nextInt(dirs));
+                        Assertions.assertSame(dirNode, child.getParent());
+                        Assertions.assertTrue(dirNode.getIndex(child) >= 0);
+                        reads.incrementAndGet();
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            try {
+                while (!stop.get()) {
+                    reversed.set(!reversed.get());
+                    model.refresh(dirNode);
+                }
+            } catch (Throwable e) {
+                errors.add(e);
+            }
+        }));
+        threads.forEach(Thread::start);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(1));
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertEquals(List.of(), new ArrayList<>(errors));
+        Assertions.assertTrue(reads.get() > 0);
+        Assertions.assertEquals(dirs, dirNode.getChildCount());
+    }
+}
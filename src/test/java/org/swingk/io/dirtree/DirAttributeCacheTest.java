@@ -0,0 +1,91 @@
+package org.swingk.io.dirtree;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class DirAttributeCacheTest {
+    @Test
+    public void load(@TempDir Path dir) throws Exception {
+        Path a = Files.createDirectory(dir.resolve("a"));
+        Files.createDirectory(a.resolve("a1"));
+        Files.createFile(a.resolve("f"));
+        Files.createDirectory(dir.resolve("b"));
+
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        var dirNode = (DefaultDirNode) model.getTreePath(dir).orElseThrow().getLastPathComponent();
+        Assertions.assertEquals(2, model.getChildCount(dirNode));
+        DefaultDirNode aNode = dirNode.getChildAt(0);
+        var changed = new ArrayList<Object>();
+        model.addTreeModelListener(new TreeModelListener() {
+            @Override
+            public void treeNodesChanged(TreeModelEvent e) {
+                changed.add(e.getChildren()[0]);
+            }
+
+            @Override
+            public void treeNodesInserted(TreeModelEvent e) {
+            }
+
+            @Override
+            public void treeNodesRemoved(TreeModelEvent e) {
+            }
+
+            @Override
+            public void treeStructureChanged(TreeModelEvent e) {
+            }
+        });
+        try (var cache = new DirAttributeCache<>(model)) {
+            cache.setCountItems(true);
+            Assertions.assertNull(cache.getAttributes(aNode));
+            cache.load(List.of(aNode, dirNode.getChildAt(1))).get(30, TimeUnit.SECONDS);
+            DirAttributes attributes = cache.getAttributes(aNode);
+            Assertions.assertEquals(Files.getLastModifiedTime(a), attributes.getLastModifiedTime());
+            Assertions.assertEquals(2, attributes.getItemCount());
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("owner")) {
+                Assertions.assertEquals(Files.getOwner(a).getName(), attributes.getOwner());
+            }
+            Assertions.assertEquals(List.of(aNode, dirNode.getChildAt(1)), changed);
+
+            // fresh attributes are not loaded again
+            cache.load(List.of(aNode)).get(30, TimeUnit.SECONDS);
+            Assertions.assertEquals(2, changed.size());
+
+            // expired attributes remain available until they are loaded again
+            cache.setTimeToLive(0);
+            Files.setLastModifiedTime(a, FileTime.fromMillis(1_000_000L));
+            Assertions.assertSame(attributes, cache.getAttributes(aNode));
+            cache.load(List.of(aNode)).get(30, TimeUnit.SECONDS);
+            Assertions.assertEquals(FileTime.fromMillis(1_000_000L), cache.getAttributes(aNode).getLastModifiedTime());
+        }
+    }
+
+    @Test
+    public void listed(@TempDir Path dir) throws Exception {
+        Path a = Files.createDirectory(dir.resolve("a"));
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        try (var cache = new DirAttributeCache<>(model)) {
+            model.setAttributeCache(cache);
+            var dirNode = (DefaultDirNode) model.getTreePath(dir).orElseThrow().getLastPathComponent();
+            Assertions.assertEquals(1, model.getChildCount(dirNode));
+            DirAttributes attributes = cache.getAttributes(dirNode.getChildAt(0));
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                // read by the filter while listing
+                Assertions.assertEquals(Files.getLastModifiedTime(a), attributes.getLastModifiedTime());
+                Assertions.assertEquals(Files.getOwner(a), attributes.getOwnerPrincipal());
+                Assertions.assertEquals(Files.getOwner(a).getName(), attributes.getOwner());
+                Assertions.assertEquals(-1, attributes.getItemCount());
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.swingk.io.dirtree;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DirHierarchyTest {
+    @Test
+    public void children(@TempDir Path dir) throws Exception {
+        Files.createDirectory(dir.resolve("b10"));
+        Files.createDirectory(dir.resolve("B2"));
+        Files.createDirectory(dir.resolve("a"));
+        Files.createDirectory(dir.resolve("node_modules"));
+        Files.createDirectory(dir.resolve("a").resolve("a1"));
+        Files.createFile(dir.resolve("f"));
+
+        var hierarchy = new DirHierarchy(List.of(FileSystems.getDefault()), DirTreeUtils.NATURAL_NAME_ORDER, true,
+                true, DirEntryFilter.excludeNames("node_modules"));
+        Assertions.assertEquals(List.of(dir.resolve("a"), dir.resolve("B2"), dir.resolve("b10")),
+                hierarchy.getChildren(dir));
+        Assertions.assertFalse(hierarchy.isLeaf(dir.resolve("a")));
+        Assertions.assertTrue(hierarchy.isLeaf(dir.resolve("B2")));
+        Assertions.assertTrue(hierarchy.isLeaf(dir.resolve("nonexistent")));
+        Assertions.assertFalse(hierarchy.accept(dir.resolve("node_modules")));
+        Assertions.assertThrows(IOException.class, () -> hierarchy.getChildren(dir.resolve("nonexistent")));
+
+        // cached until invalidated
+        Files.createDirectory(dir.resolve("c"));
+        Files.createDirectory(dir.resolve("B2").resolve("b21"));
+        Assertions.assertEquals(3, hierarchy.getChildren(dir).size());
+        Assertions.assertTrue(hierarchy.isLeaf(dir.resolve("B2")));
+        hierarchy.invalidate(dir);
+        hierarchy.invalidate(dir.resolve("B2"));
+        Assertions.assertEquals(4, hierarchy.getChildren(dir).size());
+        Assertions.assertFalse(hierarchy.isLeaf(dir.resolve("B2")));
+
+        hierarchy.setMaxCachedDirectories(0);
+        Files.createDirectory(dir.resolve("d"));
+        Assertions.assertEquals(5, hierarchy.getChildren(dir).size());
+    }
+
+    @Test
+    public void modelHierarchy(@TempDir Path dir) throws Exception {
+        Files.createDirectory(dir.resolve("d1"));
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        DirHierarchy hierarchy = model.getHierarchy();
+        Assertions.assertEquals(0, hierarchy.getMaxCachedDirectories());
+        Assertions.assertEquals(List.of(dir.resolve("d1")), hierarchy.getChildren(dir));
+        var probe = LeafProbe.bounded(10);
+        model.setLeafProbe(probe);
+        Assertions.assertSame(probe, hierarchy.getLeafProbe());
+    }
+
+    @Test
+    public void sharedByModels(@TempDir Path dir) throws Exception {
+        Files.createDirectories(dir.resolve("a").resolve("a1"));
+        Files.createDirectories(dir.resolve("b"));
+        var hierarchy = new DirHierarchy();
+        hierarchy.setMaxCachedDirectories(0); // only the directories populated by the models
+        AtomicInteger listings = new AtomicInteger();
+        hierarchy.setMetrics(new DirTreeMetrics() {
+            @Override
+            public void directoryListed(Path directory, int entries, int accepted, int attributeReads, long nanos) {
+                listings.incrementAndGet();
+            }
+        });
+        var model1 = new DirTreeModel<>(hierarchy, new DefaultNodeFactory());
+        var model2 = new DirTreeModel<>(hierarchy, new DefaultNodeFactory());
+        var node1 = (DefaultDirNode) model1.getTreePath(dir.resolve("a")).orElseThrow().getLastPathComponent();
+        int listed = listings.get();
+        int cached = hierarchy.getCachedDirectoryCount();
+        Assertions.assertEquals(dir.getNameCount() + 1, cached); // root and the ancestors of 'a'
+        var node2 = (DefaultDirNode) model2.getTreePath(dir.resolve("a")).orElseThrow().getLastPathComponent();
+        Assertions.assertEquals(listed, listings.get());
+        Assertions.assertEquals(1, model1.getChildCount(node1));
+        Assertions.assertEquals(1, model2.getChildCount(node2));
+        Assertions.assertEquals(listed + 1, listings.get());
+        Assertions.assertEquals(cached + 1, hierarchy.getCachedDirectoryCount());
+
+        // refresh of one model lists the directory again for all of them
+        Files.createDirectory(dir.resolve("a").resolve("a2"));
+        model1.refresh(node1);
+        Assertions.assertEquals(2, node1.getChildCount());
+        Assertions.assertEquals(List.of(dir.resolve("a").resolve("a1"), dir.resolve("a").resolve("a2")),
+                hierarchy.getChildren(dir.resolve("a")));
+        Assertions.assertEquals(listed + 2, listings.get());
+    }
+
+    @Test
+    public void references(@TempDir Path dir) throws Exception {
+        Files.createDirectory(dir.resolve("a"));
+        var hierarchy = new DirHierarchy();
+        hierarchy.setMaxCachedDirectories(0);
+        hierarchy.getChildren(dir);
+        Assertions.assertEquals(0, hierarchy.getCachedDirectoryCount());
+        hierarchy.retain(dir);
+        hierarchy.retain(dir);
+        List<Path> children = hierarchy.getChildren(dir);
+        Assertions.assertSame(children, hierarchy.getChildren(dir));
+        hierarchy.release(dir);
+        Assertions.assertSame(children, hierarchy.getChildren(dir));
+        hierarchy.release(dir);
+        Assertions.assertEquals(0, hierarchy.getCachedDirectoryCount());
+
+        hierarchy.setMaxCachedDirectories(1);
+        hierarchy.getChildren(dir);
+        hierarchy.isLeaf(dir.resolve("a"));
+        Assertions.assertEquals(1, hierarchy.getCachedDirectoryCount()); // least recently used is evicted
+    }
+}
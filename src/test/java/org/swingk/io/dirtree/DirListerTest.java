@@ -0,0 +1,78 @@
+package org.swingk.io.dirtree;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class DirListerTest {
+    @Test
+    public void list(@TempDir Path dir) throws Exception {
+        Files.createDirectory(dir.resolve("d1"));
+        Files.createDirectory(dir.resolve("d2"));
+        Files.createFile(dir.resolve("f1"));
+        Files.createDirectory(dir.resolve("empty"));
+        Files.createDirectory(dir.resolve("d1").resolve("d11"));
+        Files.createFile(dir.resolve("empty").resolve("f2"));
+
+        var lister = new DirLister(new DirFilter(true, true));
+        Assertions.assertEquals(Set.of(dir.resolve("d1"), dir.resolve("d2"), dir.resolve("empty")),
+                new HashSet<>(lister.list(dir)));
+        Assertions.assertEquals(List.of(dir.resolve("d1").resolve("d11")), lister.list(dir.resolve("d1")));
+        Assertions.assertTrue(lister.hasChildren(dir));
+        Assertions.assertTrue(lister.hasChildren(dir.resolve("d1")));
+        Assertions.assertFalse(lister.hasChildren(dir.resolve("empty")));
+    }
+
+    @Test
+    public void hidden(@TempDir Path dir) throws Exception {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return;
+        }
+        Files.createDirectory(dir.resolve(".hidden"));
+        Files.createDirectory(dir.resolve("visible"));
+        Assertions.assertEquals(List.of(dir.resolve("visible")),
+                new DirLister(new DirFilter(false, false)).list(dir));
+        Assertions.assertEquals(2, new DirLister(new DirFilter(true, false)).list(dir).size());
+    }
+
+    @Test
+    public void entryFilter(@TempDir Path dir) throws Exception {
+        Files.createDirectory(dir.resolve("src"));
+        Files.createDirectory(dir.resolve("node_modules"));
+        Files.createDirectory(dir.resolve("@eaDir"));
+        Files.createDirectory(dir.resolve("daily.snapshot"));
+        Files.createDirectory(dir.resolve("v1"));
+        Files.createDirectory(dir.resolve("v2x"));
+        var entryFilter = DirEntryFilter.excludeNames("node_modules", "@eaDir")
+                .and(DirEntryFilter.excludeGlob("*.snapshot"))
+                .and(DirEntryFilter.excludeGlob("v[!a-z]"));
+        var lister = new DirLister(new DirFilter(true, true, entryFilter));
+        var stats = new ListingStats();
+        Assertions.assertEquals(Set.of(dir.resolve("src"), dir.resolve("v2x")), new HashSet<>(lister.list(dir, stats)));
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Assertions.assertEquals(2, stats.attributeReads); // rejected names cost no attribute reads
+        }
+
+        var attributeFilter = new DirEntryFilter() {
+            @Override
+            public boolean acceptName(String name) {
+                return true;
+            }
+
+            @Override
+            public boolean acceptAttributes(Path path, BasicFileAttributes attrs) {
+                return !path.getFileName().toString().startsWith("v");
+            }
+        };
+        Assertions.assertEquals(4, new DirLister(new DirFilter(true, true,
+                attributeFilter)).list(dir).size());
+    }
+}
@@ -0,0 +1,90 @@
+package org.swingk.io.dirtree;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.swing.tree.TreePath;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class DirNameIndexTest {
+    @Test
+    public void find(@TempDir Path dir) throws Exception {
+        Files.createDirectories(dir.resolve("src").resolve("main").resolve("java"));
+        Files.createDirectories(dir.resolve("src").resolve("test").resolve("java"));
+        Files.createDirectories(dir.resolve("docs").resolve("Javadoc"));
+        Files.createDirectories(dir.resolve(".hidden").resolve("java"));
+
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        try (var index = new DirNameIndex(model)) {
+            index.addRoot(dir).get(30, TimeUnit.SECONDS);
+            Assertions.assertFalse(index.isIndexing());
+            Assertions.assertEquals(8, index.size()); // hidden directory is filtered out
+
+            Assertions.assertEquals(List.of(dir.resolve("docs").resolve("Javadoc"),
+                    dir.resolve("src").resolve("main").resolve("java"),
+                    dir.resolve("src").resolve("test").resolve("java")), sorted(index.find("JAVA", 10)));
+            // prefix matches come first
+            Assertions.assertEquals(2, index.find("do", 10).size()); // refined by the next query
+            Assertions.assertEquals(List.of(dir.resolve("docs"), dir.resolve("docs").resolve("Javadoc")),
+                    index.find("doc", 10));
+            Assertions.assertEquals(1, index.find("java", 1).size());
+            Assertions.assertEquals(List.of(), index.find("xyz", 10));
+
+            List<TreePath> treePaths = index.findTreePaths("test", 10);
+            Assertions.assertEquals(1, treePaths.size());
+            Assertions.assertEquals(dir.resolve("src").resolve("test"),
+                    ((DefaultDirNode) treePaths.get(0).getLastPathComponent()).getDirectory());
+        }
+    }
+
+    @Test
+    public void update(@TempDir Path dir) throws Exception {
+        Files.createDirectories(dir.resolve("a").resolve("a1"));
+        Files.createDirectory(dir.resolve("b"));
+
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        try (var index = new DirNameIndex(model)) {
+            model.setNameIndex(index);
+            index.addRoot(dir).get(30, TimeUnit.SECONDS);
+            Assertions.assertEquals(4, index.size());
+
+            Files.delete(dir.resolve("a").resolve("a1"));
+            Files.delete(dir.resolve("a"));
+            Files.createDirectories(dir.resolve("c").resolve("c1"));
+            index.update(dir).get(30, TimeUnit.SECONDS);
+            Assertions.assertEquals(List.of(), index.find("a1", 10));
+            Assertions.assertEquals(List.of(dir.resolve("c").resolve("c1")), index.find("c1", 10));
+
+            // listing done by the model updates the index
+            Files.createDirectory(dir.resolve("b").resolve("b1"));
+            Assertions.assertEquals(1, model.getChildCount(model.getTreePath(dir.resolve("b")).orElseThrow()
+                    .getLastPathComponent()));
+            index.update(dir.resolve("nonexistent")).get(30, TimeUnit.SECONDS); // waits for the previous updates
+            Assertions.assertEquals(List.of(dir.resolve("b").resolve("b1")), index.find("b1", 10));
+        }
+    }
+
+    @Test
+    public void symbolicLinkCycle(@TempDir Path dir) throws Exception {
+        Path a = Files.createDirectory(dir.resolve("a"));
+        Files.createSymbolicLink(a.resolve("up1"), dir);
+        Files.createSymbolicLink(a.resolve("up2"), dir);
+
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        try (var index = new DirNameIndex(model)) {
+            index.addRoot(dir).get(30, TimeUnit.SECONDS);
+            Assertions.assertFalse(index.isIndexing());
+            Assertions.assertEquals(4, index.size()); // the links are indexed, but not crawled
+            Assertions.assertEquals(List.of(a.resolve("up1")), index.find("up1", 10));
+        }
+    }
+
+    private static List<Path> sorted(List<Path> paths) {
+        return paths.stream().sorted().collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,115 @@
+package org.swingk.io.dirtree;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreePath;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class DirSizeAggregatorTest {
+    @Test
+    public void compute(@TempDir Path dir) throws Exception {
+        Path a = Files.createDirectories(dir.resolve("a").resolve("a1"));
+        Path b = Files.createDirectory(dir.resolve("b"));
+        Files.write(dir.resolve("f"), new byte[100]);
+        Files.write(a.resolve("f"), new byte[10]);
+        Path shared = Files.write(b.resolve("shared"), new byte[1000]);
+        boolean links = true;
+        try {
+            Files.createLink(a.resolve("shared"), shared);
+            Files.createSymbolicLink(b.resolve("loop"), dir); // not followed
+        } catch (UnsupportedOperationException | IOException e) {
+            links = false;
+        }
+
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        TreePath treePath = model.getTreePath(dir).orElseThrow();
+        DefaultDirNode dirNode = (DefaultDirNode) treePath.getLastPathComponent();
+        var events = new ArrayList<TreePath>();
+        model.addTreeModelListener(new TreeModelListener() {
+            @Override
+            public void treeNodesChanged(TreeModelEvent e) {
+                events.add(e.getTreePath().pathByAddingChild(e.getChildren()[0]));
+            }
+
+            @Override
+            public void treeNodesInserted(TreeModelEvent e) {
+            }
+
+            @Override
+            public void treeNodesRemoved(TreeModelEvent e) {
+            }
+
+            @Override
+            public void treeStructureChanged(TreeModelEvent e) {
+            }
+        });
+        try (var aggregator = new DirSizeAggregator<>(model)) {
+            Assertions.assertNull(aggregator.getSize(dirNode));
+            DirSize size = aggregator.compute(dirNode).get(30, TimeUnit.SECONDS);
+            Assertions.assertTrue(size.isComplete());
+            Assertions.assertEquals(3, size.getDirectoryCount());
+            if (links) {
+                Assertions.assertEquals(4, size.getFileCount()); // shared file once, symbolic link
+                long linkSize = Files.readAttributes(b.resolve("loop"), BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS).size();
+                Assertions.assertEquals(1110 + linkSize, size.getBytes());
+            } else {
+                Assertions.assertEquals(3, size.getFileCount());
+                Assertions.assertEquals(1110, size.getBytes());
+            }
+            SwingUtilities.invokeAndWait(() -> {
+            });
+            Assertions.assertTrue(events.contains(treePath), events.toString());
+
+            // subdirectories are cached
+            DefaultDirNode aNode = model.getChild(dirNode, 0);
+            Assertions.assertEquals(links ? 2 : 1, aggregator.getSize(aNode).getFileCount());
+            aggregator.invalidate(a);
+            Assertions.assertNull(aggregator.getSize(aNode));
+            Assertions.assertNull(aggregator.getSize(dirNode));
+            Assertions.assertEquals(1, aggregator.compute(aNode).get(30, TimeUnit.SECONDS).getDirectoryCount());
+        }
+    }
+
+    @Test
+    public void bindMount(@TempDir Path dir) throws Exception {
+        Path a = Files.createDirectories(dir.resolve("a").resolve("a1")).getParent();
+        Files.write(a.resolve("f"), new byte[10]);
+        Path b = Files.createDirectory(dir.resolve("b"));
+        if (!run("mount", "--bind", a.toString(), b.toString())) {
+            return; // bind mounts are not available (e.g. not root or not Linux)
+        }
+        try {
+            var model = new DirTreeModel<>(new DefaultNodeFactory());
+            DefaultDirNode dirNode = (DefaultDirNode) model.getTreePath(dir).orElseThrow().getLastPathComponent();
+            try (var aggregator = new DirSizeAggregator<>(model)) {
+                DirSize size = aggregator.compute(dirNode).get(30, TimeUnit.SECONDS);
+                Assertions.assertEquals(2, size.getDirectoryCount()); // a (or b) and a1 once
+                Assertions.assertEquals(1, size.getFileCount());
+                Assertions.assertEquals(10, size.getBytes());
+            }
+        } finally {
+            run("umount", b.toString());
+        }
+    }
+
+    private static boolean run(String... command) throws InterruptedException {
+        try {
+            return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start().waitFor() == 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
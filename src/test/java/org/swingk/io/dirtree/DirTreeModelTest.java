@@ -2,13 +2,58 @@ package org.swingk.io.dirtree;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import javax.swing.SwingUtilities;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
 import javax.swing.tree.TreePath;
+import java.net.URI;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DirTreeModelTest {
+    private static class EventRecorder implements TreeModelListener {
+        private final List<String> events;
+
+        EventRecorder(List<String> events) {
+            this.events = events;
+        }
+
+        @Override
+        public void treeNodesChanged(TreeModelEvent e) {
+            events.add("changed");
+        }
+
+        @Override
+        public void treeNodesInserted(TreeModelEvent e) {
+            events.add("inserted " + Arrays.toString(e.getChildIndices()));
+        }
+
+        @Override
+        public void treeNodesRemoved(TreeModelEvent e) {
+            events.add("removed " + Arrays.toString(e.getChildIndices()));
+        }
+
+        @Override
+        public void treeStructureChanged(TreeModelEvent e) {
+            events.add("structure");
+        }
+    }
+
     @Test
     public void basicTest() {
         var model = new DirTreeModel<>(DirTreeUtils.NAME_COMPARATOR, true, true, new DefaultNodeFactory());
@@ -45,4 +90,612 @@ public class DirTreeModelTest {
         Assertions.assertThrows(IllegalArgumentException.class,
                 () -> model.getTreePath(Path.of("non_absolute_path_dir_tree")));
     }
+
+    @Test
+    public void asynchronousPopulation(@TempDir Path dir) throws Exception {
+        Files.createDirectory(dir.resolve("b"));
+        Files.createDirectory(dir.resolve("a"));
+        Files.createFile(dir.resolve("file.txt"));
+
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        DefaultDirNode dirNode = (DefaultDirNode) model.getTreePath(dir).orElseThrow().getLastPathComponent();
+        var events = new ArrayList<String>();
+        model.addTreeModelListener(new EventRecorder(events));
+        var tasks = new ArrayList<Runnable>();
+        model.setListingExecutor(tasks::add);
+        Assertions.assertTrue(model.isAsynchronous());
+
+        Assertions.assertFalse(model.isLeaf(dirNode));
+        Assertions.assertEquals(1, model.getChildCount(dirNode));
+        DefaultDirNode placeholder = model.getChild(dirNode, 0);
+        Assertions.assertEquals(PlaceholderKind.LOADING, placeholder.getPlaceholderKind());
+        Assertions.assertTrue(model.isLeaf(placeholder));
+        Assertions.assertEquals(0, model.getChildCount(placeholder));
+        Assertions.assertEquals(2, tasks.size()); // leaf probe and listing
+        Assertions.assertTrue(events.isEmpty());
+
+        tasks.forEach(Runnable::run);
+        SwingUtilities.invokeAndWait(() -> {
+        }); // flush the EDT
+        Assertions.assertEquals(List.of("removed [0]", "inserted [0, 1]"), events);
+        Assertions.assertEquals(2, model.getChildCount(dirNode));
+        Assertions.assertEquals(dir.resolve("a"), model.getChild(dirNode, 0).getDirectory());
+        Assertions.assertEquals(dir.resolve("b"), model.getChild(dirNode, 1).getDirectory());
+    }
+
+    @Test
+    public void leafProbe(@TempDir Path dir) throws Exception {
+        Path files = Files.createDirectory(dir.resolve("files"));
+        for (int i = 0; i < 10; i++) {
+            Files.createFile(files.resolve("f" + i));
+        }
+        Files.createDirectory(dir.resolve("dirs"));
+        Files.createDirectory(dir.resolve("dirs").resolve("d"));
+
+        var filter = new DirFilter(true, true);
+        Assertions.assertTrue(LeafProbe.exact().isLeaf(files, filter));
+        Assertions.assertFalse(LeafProbe.bounded(5).isLeaf(files, filter));
+        Assertions.assertTrue(LeafProbe.bounded(10).isLeaf(files, filter));
+        Assertions.assertFalse(LeafProbe.bounded(0).isLeaf(dir.resolve("dirs"), filter));
+        Assertions.assertFalse(LeafProbe.linkCount(LeafProbe.exact()).isLeaf(dir.resolve("dirs"), filter));
+        Assertions.assertTrue(LeafProbe.linkCount(LeafProbe.exact()).isLeaf(dir.resolve("dirs").resolve("d"), filter));
+
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        model.setLeafProbe(LeafProbe.bounded(5));
+        DefaultDirNode filesNode = (DefaultDirNode) model.getTreePath(files).orElseThrow().getLastPathComponent();
+        Assertions.assertFalse(model.isLeaf(filesNode));
+        Assertions.assertEquals(0, model.getChildCount(filesNode));
+        Assertions.assertTrue(model.isLeaf(filesNode)); // corrected after the listing
+    }
+
+    @Test
+    public void refresh(@TempDir Path dir) throws Exception {
+        Files.createDirectory(dir.resolve("a"));
+        Files.createDirectory(dir.resolve("c"));
+        Files.createDirectory(dir.resolve("e"));
+
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        DefaultDirNode dirNode = (DefaultDirNode) model.getTreePath(dir).orElseThrow().getLastPathComponent();
+        Assertions.assertEquals(3, model.getChildCount(dirNode));
+        var events = new ArrayList<String>();
+        model.addTreeModelListener(new EventRecorder(events));
+
+        Files.createDirectory(dir.resolve("b"));
+        Files.createDirectory(dir.resolve("d"));
+        Files.delete(dir.resolve("c"));
+        model.refresh(dirNode);
+        Assertions.assertEquals(List.of("removed [1]", "inserted [1, 2]"), events);
+        Assertions.assertEquals(4, model.getChildCount(dirNode));
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertEquals(dir.resolve("abde".substring(i, i + 1)), model.getChild(dirNode, i).getDirectory());
+        }
+    }
+
+    @Test
+    public void watching(@TempDir Path dir) throws Exception {
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        DefaultDirNode dirNode = (DefaultDirNode) model.getTreePath(dir).orElseThrow().getLastPathComponent();
+        Assertions.assertEquals(0, model.getChildCount(dirNode));
+        var events = Collections.synchronizedList(new ArrayList<String>());
+        model.addTreeModelListener(new EventRecorder(events));
+        model.setWatching(true);
+        try {
+            for (Object node : model.getTreePath(dir).orElseThrow().getPath()) {
+                model.nodeExpanded((DefaultDirNode) node);
+            }
+            Files.createDirectory(dir.resolve("a"));
+            Files.createDirectory(dir.resolve("b"));
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (events.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            SwingUtilities.invokeAndWait(() -> {
+            });
+            Assertions.assertEquals(List.of("inserted [0, 1]"), events);
+            Assertions.assertEquals(2, model.getChildCount(dirNode));
+        } finally {
+            model.setWatching(false);
+        }
+    }
+
+    @Test
+    public void eviction(@TempDir Path dir) throws Exception {
+        Files.createDirectories(dir.resolve("a").resolve("a1"));
+        Files.createDirectories(dir.resolve("a").resolve("a2"));
+        Files.createDirectories(dir.resolve("b").resolve("b1"));
+
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        TreePath dirPath = model.getTreePath(dir).orElseThrow();
+        for (Object node : dirPath.getPath()) {
+            model.nodeExpanded((DefaultDirNode) node);
+        }
+        DefaultDirNode dirNode = (DefaultDirNode) dirPath.getLastPathComponent();
+        DefaultDirNode a = model.getChild(dirNode, 0);
+        DefaultDirNode b = model.getChild(dirNode, 1);
+        Assertions.assertEquals(2, model.getChildCount(a));
+        Assertions.assertEquals(1, model.getChildCount(b));
+        int nodeCount = model.getNodeCount();
+        var events = new ArrayList<String>();
+        model.addTreeModelListener(new EventRecorder(events));
+
+        model.setEvictionLimits(1, 0);
+        SwingUtilities.invokeAndWait(() -> {
+        });
+        Assertions.assertEquals(2, model.getEvictionCount());
+        Assertions.assertEquals(List.of("structure", "structure"), events);
+        Assertions.assertEquals(nodeCount - 3, model.getNodeCount());
+        Assertions.assertFalse(model.isLeaf(a));
+
+        SwingUtilities.invokeAndWait(() -> { // before the model evicts it again
+            Assertions.assertEquals(2, model.getChildCount(a)); // populated again
+            Assertions.assertEquals(nodeCount - 1, model.getNodeCount());
+        });
+    }
+
+    @Test
+    public void evictionOfHiddenExpanded(@TempDir Path dir) throws Exception {
+        Files.createDirectories(dir.resolve("a").resolve("a1"));
+        Files.createDirectories(dir.resolve("a").resolve("a2"));
+        Files.createDirectory(dir.resolve("b"));
+
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        model.setEvictionLimits(0, 10_000);
+        TreePath dirPath = model.getTreePath(dir).orElseThrow();
+        for (Object node : dirPath.getPath()) {
+            model.nodeExpanded((DefaultDirNode) node);
+        }
+        DefaultDirNode dirNode = (DefaultDirNode) dirPath.getLastPathComponent();
+        DefaultDirNode a = model.getChild(dirNode, 0);
+        Assertions.assertEquals(2, model.getChildCount(a));
+        model.nodeExpanded(a);
+        model.nodeCollapsed(dirNode); // a stays expanded, but isn't shown
+        Assertions.assertEquals(2, model.getChildCount(dirNode)); // accessed after a
+
+        model.setEvictionLimits(0, model.getNodeCount() - 1);
+        SwingUtilities.invokeAndWait(() -> {
+        });
+        Assertions.assertEquals(1, model.getEvictionCount());
+        Assertions.assertEquals(0, a.getChildCount());
+        Assertions.assertEquals(2, dirNode.getChildCount());
+    }
+
+    @Test
+    public void compactNodesRemoved(@TempDir Path dir) throws Exception {
+        Files.createDirectories(dir.resolve("a").resolve("a1"));
+        Files.createDirectories(dir.resolve("b").resolve("b1"));
+        Files.createDirectory(dir.resolve("c"));
+
+        var model = new DirTreeModel<>(new CompactNodeFactory());
+        TreePath dirPath = model.getTreePath(dir).orElseThrow();
+        CompactDirNode dirNode = (CompactDirNode) dirPath.getLastPathComponent();
+        CompactDirNode a = model.getChild(dirNode, 0);
+        Assertions.assertEquals(1, model.getChildCount(a));
+        CompactDirNode a1 = model.getChild(a, 0);
+        int nodeCount = model.getNodeCount();
+
+        // refresh removes the populated child and its descendants
+        Files.delete(dir.resolve("a").resolve("a1"));
+        Files.delete(dir.resolve("a"));
+        model.refresh(dirNode);
+        Assertions.assertEquals(2, model.getChildCount(dirNode));
+        Assertions.assertNull(a.getParent());
+        Assertions.assertEquals(dir.resolve("a"), a.getDirectory());
+        Assertions.assertEquals(dir.resolve("a").resolve("a1"), a1.getDirectory());
+        Assertions.assertEquals(nodeCount - 2, model.getNodeCount());
+
+        // eviction resets the collapsed child
+        for (Object node : dirPath.getPath()) {
+            model.nodeExpanded((CompactDirNode) node);
+        }
+        CompactDirNode b = model.getChild(dirNode, 0);
+        Assertions.assertEquals(1, model.getChildCount(b));
+        model.setEvictionLimits(1, 0);
+        SwingUtilities.invokeAndWait(() -> {
+        });
+        Assertions.assertEquals(1, model.getEvictionCount());
+        Assertions.assertEquals(dir.resolve("b"), b.getDirectory());
+    }
+
+    @Test
+    public void childLookup(@TempDir Path dir) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            Files.createDirectory(dir.resolve("d" + i));
+        }
+        boolean caseSensitive = true;
+        try {
+            Files.createDirectory(dir.resolve("x"));
+            Files.createDirectory(dir.resolve("X"));
+        } catch (FileAlreadyExistsException e) {
+            caseSensitive = false;
+        }
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        DefaultDirNode dirNode = (DefaultDirNode) model.getTreePath(dir).orElseThrow().getLastPathComponent();
+        int childCount = model.getChildCount(dirNode);
+        Assertions.assertEquals(caseSensitive ? 102 : 101, childCount);
+        for (int i = 0; i < childCount; i++) {
+            DefaultDirNode child = model.getChild(dirNode, i);
+            Assertions.assertEquals(i, model.getIndexOfChild(dirNode, child));
+            Assertions.assertSame(child, model.getTreePath(child.getDirectory()).orElseThrow().getLastPathComponent());
+        }
+        Assertions.assertEquals(-1, model.getIndexOfChild(dirNode, model.getRoot()));
+        Assertions.assertEquals(-1, model.getIndexOfChild(dirNode, null));
+    }
+
+    @Test
+    public void prepopulate(@TempDir Path dir) throws Exception {
+        Files.createDirectories(dir.resolve("a").resolve("a1").resolve("a11"));
+        Files.createDirectories(dir.resolve("b").resolve("b1"));
+
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        model.prepopulate(List.of(dir.resolve("a"), dir.resolve("b"), dir.resolve("none")), 1)
+                .get(10, TimeUnit.SECONDS);
+        // created after the listing - not in the model
+        Files.createDirectory(dir.resolve("c"));
+        Files.createDirectory(dir.resolve("a").resolve("a1").resolve("a12"));
+        Files.createDirectory(dir.resolve("b").resolve("b1").resolve("b11"));
+
+        DefaultDirNode dirNode = (DefaultDirNode) model.getTreePath(dir).orElseThrow().getLastPathComponent();
+        Assertions.assertEquals(2, model.getChildCount(dirNode));
+        DefaultDirNode a1 = (DefaultDirNode) model.getTreePath(dir.resolve("a").resolve("a1")).orElseThrow()
+                .getLastPathComponent();
+        Assertions.assertEquals(1, model.getChildCount(a1));
+        DefaultDirNode b1 = (DefaultDirNode) model.getTreePath(dir.resolve("b").resolve("b1")).orElseThrow()
+                .getLastPathComponent();
+        Assertions.assertEquals(0, model.getChildCount(b1));
+    }
+
+    @Test
+    public void concurrentPopulation(@TempDir Path dir) throws Exception {
+        for (int i = 0; i < 20; i++) {
+            Files.createDirectory(dir.resolve("d" + i));
+        }
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        List<CompletableFuture<Integer>> counts = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            counts.add(CompletableFuture.supplyAsync(() -> {
+                Object dirNode = model.getTreePath(dir).orElseThrow().getLastPathComponent();
+                return model.getChildCount(dirNode);
+            }));
+        }
+        for (CompletableFuture<Integer> count : counts) {
+            Assertions.assertEquals(20, count.get(10, TimeUnit.SECONDS).intValue());
+        }
+    }
+
+    @Test
+    public void metrics(@TempDir Path dir) throws Exception {
+        Files.createDirectories(dir.resolve("a").resolve("a1"));
+        Files.createDirectory(dir.resolve("b"));
+        Files.createFile(dir.resolve("file"));
+        Files.createDirectory(dir.resolve(".hidden"));
+
+        var listed = new ArrayList<String>();
+        var probed = new ArrayList<String>();
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        model.setMetrics(new DirTreeMetrics() {
+            @Override
+            public void directoryListed(Path directory, int entries, int accepted, int attributeReads, long nanos) {
+                if (directory.equals(dir)) {
+                    listed.add(entries + "/" + accepted);
+                }
+            }
+
+            @Override
+            public void leafProbed(Path directory, boolean leaf, long nanos) {
+                probed.add(DirTreeUtils.getName(directory) + "=" + leaf);
+            }
+        });
+        Object dirNode = model.getTreePath(dir).orElseThrow().getLastPathComponent();
+        Assertions.assertEquals(2, model.getChildCount(dirNode));
+        Assertions.assertEquals(List.of("4/2"), listed);
+        model.isLeaf(model.getChild(dirNode, 0));
+        model.isLeaf(model.getChild(dirNode, 1));
+        Assertions.assertEquals(List.of("a=false", "b=true"), probed);
+    }
+
+    @Test
+    public void paging(@TempDir Path dir) throws Exception {
+        for (int i = 24; i >= 0; i--) {
+            Files.createDirectory(dir.resolve(String.format("d%02d", i)));
+        }
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        model.setPageSize(10);
+        DefaultDirNode dirNode = (DefaultDirNode) model.getTreePath(dir).orElseThrow().getLastPathComponent();
+        Assertions.assertEquals(11, model.getChildCount(dirNode));
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertEquals(dir.resolve(String.format("d%02d", i)), model.getChild(dirNode, i).getDirectory());
+        }
+        DefaultDirNode more = model.getChild(dirNode, 10);
+        Assertions.assertEquals(PlaceholderKind.MORE, more.getPlaceholderKind());
+        Assertions.assertFalse(model.isLeaf(more));
+        Assertions.assertEquals(0, model.getChildCount(more));
+
+        var events = new ArrayList<String>();
+        model.addTreeModelListener(new EventRecorder(events));
+        model.loadNextPage(dirNode);
+        Assertions.assertEquals(21, model.getChildCount(dirNode));
+        Assertions.assertEquals(dir.resolve("d19"), model.getChild(dirNode, 19).getDirectory());
+        Assertions.assertEquals(List.of("inserted [10, 11, 12, 13, 14, 15, 16, 17, 18, 19]"), events);
+        events.clear();
+        model.loadNextPage(dirNode);
+        Assertions.assertEquals(25, model.getChildCount(dirNode));
+        Assertions.assertEquals(List.of("inserted [20, 21, 22, 23, 24]", "removed [25]"), events);
+
+        // lookup beyond the loaded pages
+        model = new DirTreeModel<>(new DefaultNodeFactory());
+        model.setPageSize(10);
+        var listed = new ArrayList<Path>();
+        model.setMetrics(new DirTreeMetrics() {
+            @Override
+            public void directoryListed(Path directory, int entries, int accepted, int attributeReads, long nanos) {
+                listed.add(directory);
+            }
+        });
+        TreePath path = model.getTreePath(dir.resolve("d17")).orElseThrow();
+        dirNode = (DefaultDirNode) path.getParentPath().getLastPathComponent();
+        Assertions.assertEquals(List.of(dir, dir), listed.subList(listed.size() - 2, listed.size()));
+        Assertions.assertEquals(19, model.getChildCount(dirNode));
+        Assertions.assertEquals(17, model.getIndexOfChild(dirNode, path.getLastPathComponent()));
+        Assertions.assertEquals(PlaceholderKind.MORE, model.getChild(dirNode, 18).getPlaceholderKind());
+
+        // refresh keeps the number of the loaded subdirectories
+        model = new DirTreeModel<>(new DefaultNodeFactory());
+        model.setPageSize(10);
+        dirNode = (DefaultDirNode) model.getTreePath(dir).orElseThrow().getLastPathComponent();
+        Assertions.assertEquals(11, model.getChildCount(dirNode));
+        Files.createDirectory(dir.resolve("d05a"));
+        events.clear();
+        model.addTreeModelListener(new EventRecorder(events));
+        model.refresh(dirNode);
+        Assertions.assertEquals(List.of("removed [9]", "inserted [6]"), events);
+        Assertions.assertEquals(11, model.getChildCount(dirNode));
+        Assertions.assertEquals(dir.resolve("d08"), model.getChild(dirNode, 9).getDirectory());
+    }
+
+    @Test
+    public void streamingPopulation(@TempDir Path dir) throws Exception {
+        for (int i = 0; i < 500; i++) {
+            Files.createDirectory(dir.resolve("d" + i));
+        }
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        DefaultDirNode dirNode = (DefaultDirNode) model.getTreePath(dir).orElseThrow().getLastPathComponent();
+        var events = new ArrayList<String>();
+        model.addTreeModelListener(new EventRecorder(events));
+        var tasks = new ArrayList<Runnable>();
+        model.setListingExecutor(tasks::add);
+        model.setBatchInterval(1);
+
+        Assertions.assertEquals(1, model.getChildCount(dirNode)); // placeholder
+        Thread.sleep(5); // the first listed subdirectory is published immediately
+        tasks.forEach(Runnable::run);
+        SwingUtilities.invokeAndWait(() -> {
+        }); // flush the EDT
+        Assertions.assertTrue(events.get(0).startsWith("inserted"), events.toString());
+        Assertions.assertTrue(events.stream().anyMatch(e -> e.startsWith("removed")), events.toString());
+        Assertions.assertEquals(500, model.getChildCount(dirNode));
+        for (int i = 1; i < 500; i++) {
+            Path previous = model.getChild(dirNode, i - 1).getDirectory();
+            Assertions.assertTrue(DirTreeUtils.NAME_ORDER.compare(previous, model.getChild(dirNode, i).getDirectory()) < 0);
+        }
+    }
+
+    @Test
+    public void prefetch(@TempDir Path dir) throws Exception {
+        Files.createDirectories(dir.resolve("a").resolve("a1"));
+        Files.createDirectories(dir.resolve("a").resolve("a2"));
+        Files.createDirectories(dir.resolve("b").resolve("b1"));
+        Files.createDirectories(dir.resolve("c").resolve("c1"));
+
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        TreePath dirPath = model.getTreePath(dir).orElseThrow();
+        for (Object node : dirPath.getParentPath().getPath()) {
+            model.nodeExpanded((DefaultDirNode) node);
+        }
+        DefaultDirNode dirNode = (DefaultDirNode) dirPath.getLastPathComponent();
+        model.setPrefetch(1, 2);
+        Assertions.assertEquals(3, model.getChildCount(dirNode));
+        model.nodeExpanded(dirNode);
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (model.getPrefetchCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(2, model.getPrefetchCount());
+
+        Assertions.assertEquals(2, model.getChildCount(model.getChild(dirNode, 0)));
+        Assertions.assertEquals(1, model.getPrefetchHitCount());
+        model.nodeCollapsed(dirNode); // drops the listing of b
+        Assertions.assertEquals(1, model.getChildCount(model.getChild(dirNode, 1)));
+        Assertions.assertEquals(1, model.getChildCount(model.getChild(dirNode, 2)));
+        Assertions.assertEquals(1, model.getPrefetchHitCount());
+        Assertions.assertEquals(2, model.getPrefetchCount());
+        model.setPrefetch(0, 0);
+    }
+
+    @Test
+    public void listingTimeout(@TempDir Path dir) throws Exception {
+        Files.createDirectory(dir.resolve("a"));
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        DefaultDirNode dirNode = (DefaultDirNode) model.getTreePath(dir).orElseThrow().getLastPathComponent();
+        var delay = new AtomicLong(2_000); // simulates a hung filesystem
+        model.setListingExecutor(task -> new Thread(() -> {
+            try {
+                Thread.sleep(delay.get());
+            } catch (InterruptedException e) {
+                return;
+            }
+            task.run();
+        }).start());
+        model.setListingTimeout(100);
+        model.setMaxListingsPerStore(2);
+
+        Assertions.assertEquals(1, model.getChildCount(dirNode)); // loading placeholder
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (model.getChild(dirNode, 0).getPlaceholderKind() != PlaceholderKind.TIMED_OUT
+                && System.currentTimeMillis() < deadline) {
+            SwingUtilities.invokeAndWait(() -> {
+            });
+        }
+        DefaultDirNode timedOut = model.getChild(dirNode, 0);
+        Assertions.assertEquals(PlaceholderKind.TIMED_OUT, timedOut.getPlaceholderKind());
+        Assertions.assertFalse(model.isLeaf(dirNode));
+        Assertions.assertFalse(model.isLeaf(timedOut));
+
+        delay.set(0);
+        SwingUtilities.invokeAndWait(() -> model.nodeExpanded(timedOut)); // retry
+        SwingUtilities.invokeAndWait(() -> {
+        });
+        model.getChildCount(dirNode);
+        while (model.getChild(dirNode, 0).getDirectory() == null && System.currentTimeMillis() < deadline) {
+            SwingUtilities.invokeAndWait(() -> {
+            });
+        }
+        Assertions.assertEquals(dir.resolve("a"), model.getChild(dirNode, 0).getDirectory());
+    }
+
+    @Test
+    public void storeLimitDoesNotBlock(@TempDir Path dir) throws Exception {
+        Files.createDirectories(dir.resolve("slow").resolve("s1"));
+        Files.createDirectories(dir.resolve("other").resolve("o1"));
+        var entered = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var model = new DirTreeModel<>(DirTreeUtils.NAME_ORDER, false, false, new DirEntryFilter() {
+            @Override
+            public boolean acceptName(String name) {
+                if (name.equals("s1")) { // simulates a hung filesystem
+                    entered.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return true;
+            }
+        }, new DefaultNodeFactory());
+        model.setMaxListingsPerStore(1);
+        Object slowNode = model.getTreePath(dir.resolve("slow")).orElseThrow().getLastPathComponent();
+        Object otherNode = model.getTreePath(dir.resolve("other")).orElseThrow().getLastPathComponent();
+        var slowListing = CompletableFuture.runAsync(() -> model.getChildCount(slowNode));
+        Assertions.assertTrue(entered.await(30, TimeUnit.SECONDS));
+
+        // the store is busy: synchronous listing without deadline times out at once instead of waiting
+        Assertions.assertEquals(1, model.getChildCount(otherNode));
+        Assertions.assertEquals(PlaceholderKind.TIMED_OUT, model.getChild(otherNode, 0).getPlaceholderKind());
+
+        release.countDown();
+        slowListing.get(30, TimeUnit.SECONDS);
+        Assertions.assertEquals(dir.resolve("slow").resolve("s1"), model.getChild(slowNode, 0).getDirectory());
+    }
+
+    @Test
+    public void listingOutsideNodeLock(@TempDir Path dir) throws Exception {
+        Files.createDirectories(dir.resolve("slow").resolve("s1"));
+        var entered = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var model = new DirTreeModel<>(DirTreeUtils.NAME_ORDER, false, false, name -> {
+            if (name.equals("s1")) { // simulates a slow filesystem
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return true;
+        }, new DefaultNodeFactory());
+        Object slowNode = model.getTreePath(dir.resolve("slow")).orElseThrow().getLastPathComponent();
+        var syncListing = CompletableFuture.runAsync(() -> model.getChildCount(slowNode));
+        Assertions.assertTrue(entered.await(30, TimeUnit.SECONDS));
+
+        // the asynchronous loading starts at once, while the synchronous listing is in progress
+        var tasks = new ArrayList<Runnable>();
+        model.setListingExecutor(tasks::add);
+        Assertions.assertEquals(1, model.getChildCount(slowNode));
+        Assertions.assertEquals(PlaceholderKind.LOADING, model.getChild(slowNode, 0).getPlaceholderKind());
+
+        release.countDown();
+        syncListing.get(30, TimeUnit.SECONDS);
+        tasks.forEach(Runnable::run);
+        SwingUtilities.invokeAndWait(() -> {
+        });
+        Assertions.assertEquals(1, model.getChildCount(slowNode));
+        Assertions.assertEquals(dir.resolve("slow").resolve("s1"), model.getChild(slowNode, 0).getDirectory());
+    }
+
+    @Test
+    public void collapseCancelsListing(@TempDir Path dir) throws Exception {
+        Files.createDirectory(dir.resolve("a"));
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        DefaultDirNode dirNode = (DefaultDirNode) model.getTreePath(dir).orElseThrow().getLastPathComponent();
+        var tasks = new ArrayList<Runnable>();
+        model.setListingExecutor(tasks::add);
+        var events = new ArrayList<String>();
+        model.addTreeModelListener(new EventRecorder(events));
+
+        Assertions.assertEquals(1, model.getChildCount(dirNode)); // loading placeholder
+        model.nodeExpanded(dirNode);
+        model.nodeCollapsed(dirNode);
+        tasks.forEach(Runnable::run); // the abandoned listing completes
+        SwingUtilities.invokeAndWait(() -> {
+        });
+        Assertions.assertEquals(List.of("structure"), events);
+        Assertions.assertEquals(1, model.getChildCount(dirNode)); // listed again
+        Assertions.assertEquals(PlaceholderKind.LOADING, model.getChild(dirNode, 0).getPlaceholderKind());
+    }
+
+    @Test
+    public void zipFileSystem(@TempDir Path dir) throws Exception {
+        Path zip = dir.resolve("archive.zip");
+        try (FileSystem zipFs = FileSystems.newFileSystem(URI.create("jar:" + zip.toUri()), Map.of("create", "true"))) {
+            Files.createDirectories(zipFs.getPath("/a/a1"));
+            Files.createDirectories(zipFs.getPath("/b"));
+            Files.createDirectories(zipFs.getPath("/.hidden"));
+            Files.write(zipFs.getPath("/a/file.txt"), new byte[10]);
+        }
+        try (FileSystem zipFs = FileSystems.newFileSystem(zip, (ClassLoader) null)) {
+            var model = new DirTreeModel<>(List.of(FileSystems.getDefault(), zipFs), DirTreeUtils.NAME_ORDER,
+                    false, false, DirEntryFilter.ACCEPT_ALL, new DefaultNodeFactory());
+            Assertions.assertEquals(2, model.getChildCount(model.getRoot()));
+            DefaultDirNode zipNode = model.getFileSystemNode(zipFs);
+            Assertions.assertSame(model.getChild(model.getRoot(), 1), zipNode);
+            Assertions.assertEquals(zip.toString(), zipNode.toString());
+
+            TreePath path = model.getTreePath(zipFs.getPath("/a/a1")).orElseThrow();
+            Assertions.assertSame(zipNode, path.getPathComponent(1));
+            DefaultDirNode zipRoot = (DefaultDirNode) path.getPathComponent(2);
+            Assertions.assertEquals(2, model.getChildCount(zipRoot)); // hidden directory is filtered out
+            Assertions.assertFalse(model.isLeaf(zipRoot.getChildAt(0)));
+            Assertions.assertTrue(model.isLeaf(path.getLastPathComponent()));
+            Assertions.assertTrue(model.getTreePath(dir).isPresent()); // default filesystem
+        }
+    }
+
+    @Test
+    public void placeholdersNotSupported(@TempDir Path dir) throws Exception {
+        Files.createDirectory(dir.resolve("a"));
+        var defaultFactory = new DefaultNodeFactory();
+        var model = new DirTreeModel<>(new DirNodeFactory<DefaultDirNode>() {
+            @Override
+            public DefaultDirNode createRootNode() {
+                return defaultFactory.createRootNode();
+            }
+
+            @Override
+            public DefaultDirNode createFileSystemNode(FileSystem fs) {
+                return defaultFactory.createFileSystemNode(fs);
+            }
+
+            @Override
+            public DefaultDirNode createDirectoryNode(Path directory, boolean filesystemRoot) {
+                return defaultFactory.createDirectoryNode(directory, filesystemRoot);
+            }
+        });
+        Assertions.assertThrows(IllegalStateException.class, () -> model.setPageSize(10));
+        Assertions.assertThrows(IllegalStateException.class, () -> model.setListingTimeout(1000));
+        Assertions.assertThrows(IllegalStateException.class, () -> model.setMaxListingsPerStore(2));
+        Assertions.assertThrows(IllegalStateException.class, () -> model.setListingExecutor(Runnable::run));
+        Assertions.assertEquals(0, model.getPageSize());
+        Object dirNode = model.getTreePath(dir).orElseThrow().getLastPathComponent();
+        Assertions.assertEquals(1, model.getChildCount(dirNode)); // synchronous model works without placeholders
+    }
 }
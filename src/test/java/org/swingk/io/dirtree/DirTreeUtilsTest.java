@@ -3,10 +3,13 @@ package org.swingk.io.dirtree;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import javax.swing.JTree;
+import javax.swing.SwingUtilities;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 public class DirTreeUtilsTest {
     @Test
@@ -20,6 +23,32 @@ public class DirTreeUtilsTest {
         Assertions.assertEquals(List.of(p2, p1, p4, p3), paths);
     }
 
+    @Test
+    public void NAME_ORDER() {
+        List<Path> paths = new ArrayList<>(List.of(Path.of("m1"), Path.of("a1"), Path.of("Z1"), Path.of("y1")));
+        List<Path> expected = new ArrayList<>(paths);
+        expected.sort(DirTreeUtils.NAME_COMPARATOR);
+        DirTreeUtils.sort(paths, DirTreeUtils.NAME_ORDER);
+        Assertions.assertEquals(expected, paths);
+        Assertions.assertTrue(DirTreeUtils.NAME_ORDER.compare(Path.of("A"), Path.of("b")) < 0);
+    }
+
+    @Test
+    public void NATURAL_NAME_ORDER() {
+        List<Path> paths = new ArrayList<>(List.of(Path.of("file10"), Path.of("File2"), Path.of("file02"),
+                Path.of("file1"), Path.of("file")));
+        DirTreeUtils.sort(paths, DirTreeUtils.NATURAL_NAME_ORDER);
+        Assertions.assertEquals(List.of(Path.of("file"), Path.of("file1"), Path.of("File2"), Path.of("file02"),
+                Path.of("file10")), paths);
+    }
+
+    @Test
+    public void collationOrder() {
+        List<Path> paths = new ArrayList<>(List.of(Path.of("b"), Path.of("B"), Path.of("A"), Path.of("a")));
+        DirTreeUtils.sort(paths, DirTreeUtils.collationOrder(Locale.ENGLISH));
+        Assertions.assertEquals(List.of(Path.of("a"), Path.of("A"), Path.of("b"), Path.of("B")), paths);
+    }
+
     @Test
     public void getName() {
         Assertions.assertEquals("m1", DirTreeUtils.getName(Path.of("m1")));
@@ -32,4 +61,27 @@ public class DirTreeUtilsTest {
             Assertions.assertEquals("m1", DirTreeUtils.getName(Path.of("c:\\m1")));
         }
     }
+
+    @Test
+    public void excludeGlob() {
+        DirEntryFilter filter = DirEntryFilter.excludeGlob("[]a]x");
+        Assertions.assertFalse(filter.acceptName("]x"));
+        Assertions.assertFalse(filter.acceptName("ax"));
+        Assertions.assertTrue(filter.acceptName("bx"));
+        filter = DirEntryFilter.excludeGlob("[!]]*.d");
+        Assertions.assertFalse(filter.acceptName("a1.d"));
+        Assertions.assertTrue(filter.acceptName("]1.d"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> DirEntryFilter.excludeGlob("[]"));
+    }
+
+    @Test
+    public void configureTreeTwice() throws Exception {
+        var tree = new JTree();
+        SwingUtilities.invokeAndWait(() -> {
+            DirTreeUtils.configureTree(tree, new DirTreeModel<>(new DefaultNodeFactory()));
+            int listeners = tree.getTreeExpansionListeners().length;
+            DirTreeUtils.configureTree(tree, new DirTreeModel<>(new DefaultNodeFactory()));
+            Assertions.assertEquals(listeners, tree.getTreeExpansionListeners().length);
+        });
+    }
 }
@@ -0,0 +1,35 @@
+package org.swingk.io.dirtree;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DirWatcherTest {
+    @Test
+    public void debounce(@TempDir Path dir) throws Exception {
+        List<Path> changed = new CopyOnWriteArrayList<>();
+        var notified = new CountDownLatch(1);
+        var watcher = new DirWatcher(d -> {
+            changed.add(d);
+            notified.countDown();
+        }, 500, DirWatcher.DEFAULT_POLL_MILLIS);
+        try (watcher) {
+            watcher.watch(dir);
+            // a burst longer than the debounce delay, with gaps well below it
+            for (int i = 0; i < 20; i++) {
+                Files.createDirectory(dir.resolve("d" + i));
+                Thread.sleep(50);
+            }
+            // generous timeout: some platforms poll for changes every few seconds
+            Assertions.assertTrue(notified.await(30, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(List.of(dir), changed);
+    }
+}
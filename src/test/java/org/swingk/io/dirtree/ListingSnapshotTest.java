@@ -0,0 +1,166 @@
+package org.swingk.io.dirtree;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ListingSnapshotTest {
+    @Test
+    public void saveAndOpen(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("snapshot.bin");
+        Path listed = dir.resolve("listed");
+        Path deep = dir.resolve("d".repeat(40_000)).resolve("e".repeat(40_000)); // longer than 64 KiB
+        FileTime time = FileTime.fromMillis(1_000_000);
+        ListingSnapshot snapshot = ListingSnapshot.open(file);
+        Assertions.assertNull(snapshot.getChildren(listed, time, (byte) 0));
+        snapshot.putChildren(listed, time, (byte) 0, List.of(listed.resolve("a"), listed.resolve("b c")));
+        snapshot.putChildren(deep, time, (byte) 0, List.of(deep.resolve("f")));
+        snapshot.putLeaf(listed.resolve("a"), true);
+        snapshot.save();
+
+        ListingSnapshot reopened = ListingSnapshot.open(file);
+        Assertions.assertNull(reopened.getChildren(listed, FileTime.fromMillis(2_000_000), (byte) 0));
+        Assertions.assertNull(reopened.getChildren(listed, time, (byte) 1)); // other filter
+        Assertions.assertEquals(List.of(listed.resolve("a"), listed.resolve("b c")),
+                reopened.getChildren(listed, time, (byte) 0));
+        Assertions.assertEquals(List.of(deep.resolve("f")), reopened.getChildren(deep, time, (byte) 0));
+        Assertions.assertEquals(Boolean.TRUE, reopened.isLeaf(listed.resolve("a")));
+        Assertions.assertNull(reopened.isLeaf(listed.resolve("b c")));
+    }
+
+    @Test
+    public void model(@TempDir Path dir) throws Exception {
+        Path file = Files.createDirectory(dir.resolve("snapshot")).resolve("snapshot.bin");
+        Path tree = Files.createDirectory(dir.resolve("tree"));
+        Files.createDirectories(tree.resolve("a").resolve("a1"));
+        Files.createDirectory(tree.resolve("b"));
+
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        model.setListingSnapshot(ListingSnapshot.open(file));
+        Object treeNode = model.getTreePath(tree).orElseThrow().getLastPathComponent();
+        Assertions.assertEquals(2, model.getChildCount(treeNode));
+        Assertions.assertFalse(model.isLeaf(model.getChild(treeNode, 0)));
+        Assertions.assertTrue(model.isLeaf(model.getChild(treeNode, 1)));
+        model.getListingSnapshot().save();
+
+        // unchanged last modified time - the snapshot is used
+        FileTime lastModified = Files.getLastModifiedTime(tree);
+        Files.createDirectory(tree.resolve("c"));
+        Files.setLastModifiedTime(tree, lastModified);
+        model = new DirTreeModel<>(new DefaultNodeFactory());
+        model.setListingSnapshot(ListingSnapshot.open(file));
+        treeNode = model.getTreePath(tree).orElseThrow().getLastPathComponent();
+        Assertions.assertEquals(2, model.getChildCount(treeNode));
+
+        // modified - listed again
+        Files.setLastModifiedTime(tree, FileTime.fromMillis(lastModified.toMillis() + 10_000));
+        model = new DirTreeModel<>(new DefaultNodeFactory());
+        model.setListingSnapshot(ListingSnapshot.open(file));
+        treeNode = model.getTreePath(tree).orElseThrow().getLastPathComponent();
+        Assertions.assertEquals(3, model.getChildCount(treeNode));
+    }
+
+    @Test
+    public void staleLeafHint(@TempDir Path dir) throws Exception {
+        Path file = Files.createDirectory(dir.resolve("snapshot")).resolve("snapshot.bin");
+        Path tree = Files.createDirectory(dir.resolve("tree"));
+        Path b = Files.createDirectory(tree.resolve("b"));
+
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        model.setListingSnapshot(ListingSnapshot.open(file));
+        Object treeNode = model.getTreePath(tree).orElseThrow().getLastPathComponent();
+        Assertions.assertTrue(model.isLeaf(model.getChild(treeNode, 0)));
+        model.getListingSnapshot().save();
+
+        // the snapshot says that b is a leaf, but b has got a subdirectory (the parent is not modified)
+        FileTime lastModified = Files.getLastModifiedTime(tree);
+        Files.createDirectory(b.resolve("c"));
+        Files.setLastModifiedTime(tree, lastModified);
+        ListingSnapshot reopened = ListingSnapshot.open(file);
+        Assertions.assertEquals(List.of(b), reopened.getChildren(tree, lastModified, (byte) 0));
+        Assertions.assertEquals(Boolean.TRUE, reopened.isLeaf(b));
+
+        // refresh of the parent determines the leaf status of its children again
+        model.refresh((DefaultDirNode) treeNode);
+        Assertions.assertFalse(model.isLeaf(model.getChild(treeNode, 0)));
+
+        model = new DirTreeModel<>(new DefaultNodeFactory());
+        model.setListingSnapshot(ListingSnapshot.open(file));
+        treeNode = model.getTreePath(tree).orElseThrow().getLastPathComponent();
+        Assertions.assertFalse(model.isLeaf(model.getChild(treeNode, 0)));
+        Assertions.assertEquals(1, model.getChildCount(model.getChild(treeNode, 0)));
+    }
+
+    @Test
+    public void filters(@TempDir Path dir) throws Exception {
+        Path file = Files.createDirectory(dir.resolve("snapshot")).resolve("snapshot.bin");
+        Path tree = Files.createDirectory(dir.resolve("tree"));
+        Files.createDirectory(tree.resolve(".hidden"));
+        Files.createDirectory(tree.resolve("a"));
+        Files.createDirectory(tree.resolve("b"));
+
+        var model = new DirTreeModel<>(DirTreeUtils.NAME_ORDER, true, true, new DefaultNodeFactory());
+        model.setListingSnapshot(ListingSnapshot.open(file));
+        Object treeNode = model.getTreePath(tree).orElseThrow().getLastPathComponent();
+        Assertions.assertEquals(3, model.getChildCount(treeNode));
+        model.getListingSnapshot().save();
+
+        // written with other hidden/system settings - listed again
+        var withoutHidden = new DirTreeModel<>(new DefaultNodeFactory());
+        withoutHidden.setListingSnapshot(ListingSnapshot.open(file));
+        treeNode = withoutHidden.getTreePath(tree).orElseThrow().getLastPathComponent();
+        Assertions.assertEquals(2, withoutHidden.getChildCount(treeNode));
+
+        // the name stage of the entry filter is applied to the stored listing
+        var excluding = new DirTreeModel<>(DirTreeUtils.NAME_ORDER, true, true, DirEntryFilter.excludeNames("b"),
+                new DefaultNodeFactory());
+        excluding.setListingSnapshot(ListingSnapshot.open(file));
+        var hits = new ArrayList<Path>();
+        excluding.setMetrics(new DirTreeMetrics() {
+            @Override
+            public void snapshotHit(Path directory) {
+                hits.add(directory);
+            }
+        });
+        treeNode = excluding.getTreePath(tree).orElseThrow().getLastPathComponent();
+        Assertions.assertEquals(2, excluding.getChildCount(treeNode));
+        Assertions.assertTrue(hits.contains(tree));
+    }
+
+    @Test
+    public void refreshedChildLeafHint(@TempDir Path dir) throws Exception {
+        Path tree = Files.createDirectory(dir.resolve("tree"));
+        Files.createDirectory(tree.resolve("a"));
+        ListingSnapshot snapshot = ListingSnapshot.open(dir.resolve("snapshot.bin"));
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        model.setListingSnapshot(snapshot);
+        var probes = new ArrayList<Path>();
+        model.setMetrics(new DirTreeMetrics() {
+            @Override
+            public void leafProbed(Path directory, boolean leaf, long nanos) {
+                probes.add(directory);
+            }
+        });
+        DefaultDirNode treeNode = (DefaultDirNode) model.getTreePath(tree).orElseThrow().getLastPathComponent();
+        Assertions.assertEquals(1, model.getChildCount(treeNode));
+
+        // another model records the new subdirectory and its leaf status in the snapshot
+        Path b = Files.createDirectories(tree.resolve("b").resolve("b1")).getParent();
+        var other = new DirTreeModel<>(new DefaultNodeFactory());
+        other.setListingSnapshot(snapshot);
+        Object otherNode = other.getTreePath(tree).orElseThrow().getLastPathComponent();
+        Assertions.assertFalse(other.isLeaf(other.getChild(otherNode, 1)));
+
+        // the child inserted by refresh gets the hint like the children of a populated node
+        model.refresh(treeNode);
+        Assertions.assertEquals(b, model.getChild(treeNode, 1).getDirectory());
+        Assertions.assertFalse(model.isLeaf(model.getChild(treeNode, 1)));
+        Assertions.assertFalse(probes.contains(b));
+    }
+}
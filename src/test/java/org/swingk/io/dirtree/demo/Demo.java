@@ -19,7 +19,11 @@ public class Demo {
         contentPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
 
         JTree tree = new JTree();
-        DirTreeUtils.configureTree(tree, new DirTreeModel<>(new DefaultNodeFactory()));
+        var model = new DirTreeModel<>(new DefaultNodeFactory());
+        model.setListingExecutor(DirTreeUtils.newListingExecutor());
+        model.setBatchInterval(100);
+        model.setWatching(true);
+        DirTreeUtils.configureTree(tree, model);
         JScrollPane sp = new JScrollPane();
         sp.setViewportView(tree);
         contentPanel.add(sp, BorderLayout.CENTER);